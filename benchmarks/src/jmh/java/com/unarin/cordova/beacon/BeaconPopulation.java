@@ -0,0 +1,97 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package com.unarin.cordova.beacon;
+
+import org.altbeacon.beacon.Beacon;
+import org.altbeacon.beacon.Identifier;
+import org.altbeacon.beacon.Region;
+import org.altbeacon.beacon.distance.DistanceCalculator;
+import org.altbeacon.beacon.logging.LogManager;
+import org.altbeacon.beacon.logging.Loggers;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/*
+ * A deployment of beacons as the benchmarks see it in a ranging cycle: a few UUIDs, a major per
+ * site and distinct minors, with RSSIs from right next to the phone to the edge of the range.
+ * The same seed always builds the same population.
+ */
+final class BeaconPopulation {
+
+    private static final String[] UUIDS = {
+            "B9407F30-F5F8-466E-AFF9-25556B57FE6D",
+            "E2C56DB5-DFFB-48D2-B060-D0F5A71096E0",
+            "F7826DA6-4FA2-4E98-8024-BC5B71E0893E"
+    };
+    private static final int TX_POWER = -59;
+
+    static {
+        // The library computes the distance with a model picked for the device, it needs an Android context.
+        Beacon.setDistanceCalculator(new DistanceCalculator() {
+            @Override
+            public double calculateDistance(int txPower, double rssi) {
+                return Math.pow(10.0, (txPower - rssi) / 20.0);
+            }
+        });
+        LogManager.setLogger(Loggers.empty());
+    }
+
+    final List<Beacon> beacons;
+    final List<Region> regions;
+    final List<JSONObject> regionJson;
+
+    BeaconPopulation(int size) throws JSONException {
+        final Random random = new Random(42);
+        beacons = new ArrayList<Beacon>(size);
+        regions = new ArrayList<Region>(size);
+        regionJson = new ArrayList<JSONObject>(size);
+
+        for (int i = 0; i < size; i++) {
+            final String uuid = UUIDS[i % UUIDS.length];
+            final String major = String.valueOf(1 + i / 100);
+            final String minor = String.valueOf(1 + i % 100);
+            final int rssi = -40 - random.nextInt(60);
+
+            final Beacon beacon = new Beacon.Builder()
+                    .setId1(uuid)
+                    .setId2(major)
+                    .setId3(minor)
+                    .setRssi(rssi)
+                    .setTxPower(TX_POWER)
+                    .build();
+            beacon.getDistance(); // computed once per cycle by the library as well
+            beacons.add(beacon);
+
+            // A region per beacon, like apps monitoring single beacons do.
+            final Region region = new Region("region-" + i,
+                    Identifier.parse(uuid), Identifier.parse(major), Identifier.parse(minor));
+            regions.add(region);
+            regionJson.add(new JSONObject()
+                    .put("identifier", region.getUniqueId())
+                    .put("uuid", uuid)
+                    .put("major", major)
+                    .put("minor", minor)
+                    .put("typeName", "BeaconRegion"));
+        }
+    }
+}
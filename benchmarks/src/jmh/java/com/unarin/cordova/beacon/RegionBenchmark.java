@@ -0,0 +1,90 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package com.unarin.cordova.beacon;
+
+import org.altbeacon.beacon.Identifier;
+import org.altbeacon.beacon.Region;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * The region side: mapping regions for their events, registered (what mapOfRegion does for started
+ * regions) and not, and parsing them from the DOM. One operation covers a region per beacon.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class RegionBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int beaconsPerCycle;
+
+    private BeaconPopulation population;
+    private RegionRegistry regionRegistry;
+
+    @Setup
+    public void setUp() throws JSONException {
+        population = new BeaconPopulation(beaconsPerCycle);
+        regionRegistry = new RegionRegistry();
+        for (Region region : population.regions) {
+            regionRegistry.register(region, RegionRegistry.RANGED, BeaconSerializer.mapOfBeaconRegion(region));
+        }
+    }
+
+    @Benchmark
+    public void mapOfRegion(Blackhole blackhole) {
+        for (Region region : population.regions) {
+            blackhole.consume(regionRegistry.get(region).json);
+        }
+    }
+
+    @Benchmark
+    public void mapOfBeaconRegion(Blackhole blackhole) throws JSONException {
+        for (Region region : population.regions) {
+            blackhole.consume(BeaconSerializer.mapOfBeaconRegion(region));
+        }
+    }
+
+    @Benchmark
+    public void parseBeaconRegion(Blackhole blackhole) throws JSONException {
+        for (JSONObject json : population.regionJson) {
+            blackhole.consume(BeaconSerializer.parseBeaconRegion(json));
+        }
+    }
+
+    @Benchmark
+    public void identifierParse(Blackhole blackhole) throws JSONException {
+        for (JSONObject json : population.regionJson) {
+            blackhole.consume(Identifier.parse(json.getString("uuid")));
+            blackhole.consume(Identifier.parse(json.getString("major")));
+            blackhole.consume(Identifier.parse(json.getString("minor")));
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package com.unarin.cordova.beacon;
+
+import org.altbeacon.beacon.Beacon;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * The beacon side of a ranging event: one operation serializes, or classifies, every beacon of a ranging cycle.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SerializationBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int beaconsPerCycle;
+
+    private static final String REGION_ID = "region";
+
+    private BeaconPopulation population;
+    private ProximityHysteresis hysteresis;
+
+    @Setup
+    public void setUp() throws JSONException {
+        population = new BeaconPopulation(beaconsPerCycle);
+        hysteresis = new ProximityHysteresis(ProximityHysteresis.DEFAULT_IMMEDIATE_NEAR_BAND,
+                ProximityHysteresis.DEFAULT_NEAR_FAR_BAND, ProximityHysteresis.DEFAULT_MIN_DWELL_MILLIS);
+    }
+
+    @Benchmark
+    public void mapOfBeacon(Blackhole blackhole) throws JSONException {
+        for (Beacon beacon : population.beacons) {
+            blackhole.consume(BeaconSerializer.mapOfBeacon(beacon, Proximities.BY_DISTANCE));
+        }
+    }
+
+    /*
+     * mapOfBeacon plus the conversion to the string handed to the bridge, which is where the
+     * identifiers are formatted.
+     */
+    @Benchmark
+    public String mapOfBeaconToString() throws JSONException {
+        final JSONArray beaconData = new JSONArray();
+        for (Beacon beacon : population.beacons) {
+            beaconData.put(BeaconSerializer.mapOfBeacon(beacon, Proximities.BY_DISTANCE));
+        }
+        return beaconData.toString();
+    }
+
+    /*
+     * The proximity classes of a ranging cycle the way the dispatch computes them, once per beacon,
+     * by the fixed thresholds and with hysteresis. Every cycle feeds the same beacons to the hysteresis.
+     */
+    @Benchmark
+    public void classifyByDistance(Blackhole blackhole) {
+        classify(ProximityClassifier.BY_DISTANCE, blackhole);
+    }
+
+    @Benchmark
+    public void classifyWithHysteresis(Blackhole blackhole) {
+        classify(hysteresis, blackhole);
+    }
+
+    private void classify(ProximityClassifier proximityClassifier, Blackhole blackhole) {
+        final Proximities proximities = Proximities.classify(proximityClassifier, REGION_ID, population.beacons);
+        for (Beacon beacon : population.beacons) {
+            blackhole.consume(proximities.of(beacon));
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package com.unarin.cordova.beacon;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Adapts the foreground between scan period to the beacon activity, starting from the configured period.
+ * After every scan cycle:
+ *  - a region transition or a dense cycle (at least denseBeaconCount beacons in a region) resets it to the minimum,
+ *  - a cycle with some beacons halves it,
+ *  - an idle cycle doubles it, up to the maximum.
+ * The scan period itself is left alone, a shorter one would miss beacons advertising at low rates.
+ */
+class AdaptiveScanScheduler {
+
+    interface Listener {
+        void onBetweenScanPeriodChanged(long betweenScanPeriod);
+    }
+
+    /* First step when backing off from a between scan period of 0, and the point below which halving snaps to the minimum. */
+    static final long BACKOFF_STEP = 1000;
+
+    private final Listener listener;
+    private final int denseBeaconCount;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    private final AtomicInteger maxBeaconsPerRegion = new AtomicInteger();
+    private final AtomicInteger transitions = new AtomicInteger();
+
+    private long scanPeriod;
+    private long minBetweenScanPeriod;
+    private long maxBetweenScanPeriod;
+    private volatile long betweenScanPeriod;
+    private boolean running;
+
+    private final Runnable evaluateTask = new Runnable() {
+        @Override
+        public void run() {
+            evaluate();
+        }
+    };
+
+    AdaptiveScanScheduler(long scanPeriod, long minBetweenScanPeriod, long maxBetweenScanPeriod,
+                          int denseBeaconCount, Listener listener) {
+        this.listener = listener;
+        this.denseBeaconCount = Math.max(1, denseBeaconCount);
+        setPeriods(scanPeriod, minBetweenScanPeriod, maxBetweenScanPeriod);
+    }
+
+    /*
+     * Changes the scan period and the bounds of the between scan period, which restarts from the minimum.
+     * The listener isn't called for this, the caller applies the new periods itself.
+     */
+    public synchronized void setPeriods(long scanPeriod, long minBetweenScanPeriod, long maxBetweenScanPeriod) {
+        this.scanPeriod = Math.max(1, scanPeriod);
+        this.minBetweenScanPeriod = Math.max(0, minBetweenScanPeriod);
+        this.maxBetweenScanPeriod = Math.max(this.minBetweenScanPeriod, maxBetweenScanPeriod);
+        this.betweenScanPeriod = this.minBetweenScanPeriod;
+        if (running) {
+            reschedule();
+        }
+    }
+
+    public synchronized void start() {
+        running = true;
+        reschedule();
+    }
+
+    public synchronized void stop() {
+        running = false;
+        handler.removeCallbacks(evaluateTask);
+    }
+
+    public long getBetweenScanPeriod() {
+        return betweenScanPeriod;
+    }
+
+    public synchronized long getMaxBetweenScanPeriod() {
+        return maxBetweenScanPeriod;
+    }
+
+    /* Called for every ranging result, from any thread. */
+    public void recordRangingCycle(int beaconCount) {
+        int max;
+        do {
+            max = maxBeaconsPerRegion.get();
+        } while (beaconCount > max && !maxBeaconsPerRegion.compareAndSet(max, beaconCount));
+    }
+
+    /* Called for every region enter or exit, from any thread. */
+    public void recordTransition() {
+        transitions.incrementAndGet();
+    }
+
+    private synchronized void evaluate() {
+        if (!running) {
+            return;
+        }
+        final int beacons = maxBeaconsPerRegion.getAndSet(0);
+        final int transitionCount = transitions.getAndSet(0);
+
+        long next;
+        if (transitionCount > 0 || beacons >= denseBeaconCount) {
+            next = minBetweenScanPeriod;
+        } else if (beacons > 0) {
+            next = betweenScanPeriod / 2 < BACKOFF_STEP ? minBetweenScanPeriod : betweenScanPeriod / 2;
+        } else {
+            next = Math.max(betweenScanPeriod * 2, BACKOFF_STEP);
+        }
+        next = Math.min(maxBetweenScanPeriod, Math.max(minBetweenScanPeriod, next));
+
+        if (next != betweenScanPeriod) {
+            betweenScanPeriod = next;
+            listener.onBetweenScanPeriodChanged(next);
+        }
+        reschedule();
+    }
+
+    private void reschedule() {
+        handler.removeCallbacks(evaluateTask);
+        handler.postDelayed(evaluateTask, scanPeriod + betweenScanPeriod);
+    }
+}
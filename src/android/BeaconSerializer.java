@@ -0,0 +1,99 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package com.unarin.cordova.beacon;
+
+import org.altbeacon.beacon.Beacon;
+import org.altbeacon.beacon.Identifier;
+import org.altbeacon.beacon.Region;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/*
+ * The JSON mapping of beacons and beacon regions between the library and the DOM. It only depends on the
+ * library and org.json, so the benchmarks can run it on a plain JVM.
+ */
+final class BeaconSerializer {
+
+    private BeaconSerializer() {
+    }
+
+    static Region parseBeaconRegion(JSONObject json) throws JSONException, UnsupportedOperationException {
+
+        String identifier = json.getString("identifier");
+
+        //For Android, uuid can be null when scanning for all beacons (I think)
+        String uuid = json.has("uuid") && !json.isNull("uuid") ? json.getString("uuid") : null;
+        String major = json.has("major") && !json.isNull("major") ? json.getString("major") : null;
+        String minor = json.has("minor") && !json.isNull("minor") ? json.getString("minor") : null;
+
+        if (major == null && minor != null)
+            throw new UnsupportedOperationException("Unsupported combination of 'major' and 'minor' parameters.");
+
+        Identifier id1 = uuid != null ? Identifier.parse(uuid) : null;
+        Identifier id2 = major != null ? Identifier.parse(major) : null;
+        Identifier id3 = minor != null ? Identifier.parse(minor) : null;
+        return new Region(identifier, id1, id2, id3);
+    }
+
+    static JSONObject mapOfBeaconRegion(Region region) throws JSONException {
+        JSONObject dict = new JSONObject();
+
+        // identifier
+        if (region.getUniqueId() != null) {
+            dict.put("identifier", region.getUniqueId());
+        }
+
+        dict.put("uuid", region.getId1());
+
+        if (region.getId2() != null) {
+            dict.put("major", region.getId2());
+        }
+
+        if (region.getId3() != null) {
+            dict.put("minor", region.getId3());
+        }
+
+        dict.put("typeName", "BeaconRegion");
+
+        return dict;
+
+    }
+
+    static JSONObject mapOfBeacon(Beacon region, Proximities proximities) throws JSONException {
+        JSONObject dict = new JSONObject();
+
+        //beacon id
+        dict.put("uuid", region.getId1());
+        dict.put("major", region.getId2());
+        dict.put("minor", region.getId3());
+
+        // proximity
+        dict.put("proximity", Proximity.nameOf(proximities.of(region)));
+
+        // signal strength and transmission power
+        dict.put("rssi", region.getRssi());
+        dict.put("tx", region.getTxPower());
+
+        // accuracy = rough distance estimate limited to two decimal places (in metres)
+        // NO NOT ASSUME THIS IS ACCURATE - it is effected by radio interference and obstacles
+        dict.put("accuracy", Math.round(region.getDistance() * 100.0) / 100.0);
+
+        return dict;
+    }
+}
@@ -0,0 +1,155 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package com.unarin.cordova.beacon;
+
+import org.altbeacon.beacon.Beacon;
+import org.altbeacon.beacon.Identifier;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/*
+ * Compact binary encoding of ranging events, decoded by LocationManager._decodeBinaryRangingEvent in the DOM.
+ *
+ * All values are big endian. A message is a header followed by one block per region:
+ *
+ *   u8 version, u8 kind (KIND_REGION or KIND_FRAME), u16 region count
+ *
+ *   u8 flags (FLAG_DELTA, FLAG_KEYFRAME, FLAG_NEAREST, FLAG_RANKING_CHANGED)
+ *   u16 length + UTF-8 bytes of the region JSON
+ *   u16 beacon count N, followed by the columns
+ *     N x 16 bytes uuid, N x u16 major, N x u16 minor, N x i8 rssi, N x i8 tx,
+ *     N x f32 accuracy, N x u8 proximity ordinal (see Proximity)
+ *   only if FLAG_DELTA is set: u16 removed count M, followed by the columns
+ *     M x 16 bytes uuid, M x u16 major, M x u16 minor
+ */
+final class BinaryRangingEncoder {
+
+    static final int VERSION = 1;
+    static final int KIND_REGION = 1;
+    static final int KIND_FRAME = 2;
+    static final int FLAG_DELTA = 1;
+    static final int FLAG_KEYFRAME = 2;
+    static final int FLAG_NEAREST = 4;
+    static final int FLAG_RANKING_CHANGED = 8;
+
+    private static final int UUID_LENGTH = 16;
+    private static final int BEACON_LENGTH = UUID_LENGTH + 2 + 2 + 1 + 1 + 4 + 1;
+    private static final int BEACON_IDENTITY_LENGTH = UUID_LENGTH + 2 + 2;
+
+    private BinaryRangingEncoder() {
+    }
+
+    /*
+     * Encodes the results, regionJson holds the UTF-8 bytes of the serialized region of each result at the same index.
+     */
+    static byte[] encode(int kind, List<RangingResult> results, List<byte[]> regionJson) {
+        int length = 4;
+        for (int i = 0; i < results.size(); i++) {
+            final RangingResult result = results.get(i);
+            length += 1 + 2 + regionJson.get(i).length + 2 + result.beacons.size() * BEACON_LENGTH;
+            if (result.delta) {
+                length += 2 + result.removed.size() * BEACON_IDENTITY_LENGTH;
+            }
+        }
+
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        buffer.put((byte) VERSION);
+        buffer.put((byte) kind);
+        buffer.putShort((short) results.size());
+
+        for (int i = 0; i < results.size(); i++) {
+            final RangingResult result = results.get(i);
+            int flags = 0;
+            if (result.delta) {
+                flags |= FLAG_DELTA;
+            }
+            if (result.keyframe) {
+                flags |= FLAG_KEYFRAME;
+            }
+            if (result.nearest) {
+                flags |= FLAG_NEAREST;
+            }
+            if (result.rankingChanged) {
+                flags |= FLAG_RANKING_CHANGED;
+            }
+            buffer.put((byte) flags);
+            final byte[] regionBytes = regionJson.get(i);
+            buffer.putShort((short) regionBytes.length);
+            buffer.put(regionBytes);
+
+            buffer.putShort((short) result.beacons.size());
+            for (Beacon beacon : result.beacons) {
+                putUuid(buffer, beacon.getId1());
+            }
+            for (Beacon beacon : result.beacons) {
+                putUnsignedShort(buffer, beacon.getId2());
+            }
+            for (Beacon beacon : result.beacons) {
+                putUnsignedShort(buffer, beacon.getId3());
+            }
+            for (Beacon beacon : result.beacons) {
+                buffer.put(clampToByte(beacon.getRssi()));
+            }
+            for (Beacon beacon : result.beacons) {
+                buffer.put(clampToByte(beacon.getTxPower()));
+            }
+            for (Beacon beacon : result.beacons) {
+                buffer.putFloat((float) beacon.getDistance());
+            }
+            for (Beacon beacon : result.beacons) {
+                buffer.put((byte) result.proximities.of(beacon));
+            }
+
+            if (result.delta) {
+                buffer.putShort((short) result.removed.size());
+                for (RangingDeltaTracker.BeaconState state : result.removed) {
+                    putUuid(buffer, state.uuid);
+                }
+                for (RangingDeltaTracker.BeaconState state : result.removed) {
+                    putUnsignedShort(buffer, state.major);
+                }
+                for (RangingDeltaTracker.BeaconState state : result.removed) {
+                    putUnsignedShort(buffer, state.minor);
+                }
+            }
+        }
+
+        return buffer.array();
+    }
+
+    private static void putUuid(ByteBuffer buffer, Identifier identifier) {
+        final byte[] bytes = identifier != null ? identifier.toByteArray() : null;
+        final int copied = bytes != null ? Math.min(bytes.length, UUID_LENGTH) : 0;
+        if (copied > 0) {
+            buffer.put(bytes, 0, copied);
+        }
+        for (int i = copied; i < UUID_LENGTH; i++) {
+            buffer.put((byte) 0);
+        }
+    }
+
+    private static void putUnsignedShort(ByteBuffer buffer, Identifier identifier) {
+        buffer.putShort((short) (identifier != null ? identifier.toInt() : 0));
+    }
+
+    private static byte clampToByte(int value) {
+        return (byte) Math.max(Byte.MIN_VALUE, Math.min(Byte.MAX_VALUE, value));
+    }
+}
@@ -0,0 +1,201 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package com.unarin.cordova.beacon;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Runs the plugin commands on a thread owned by the plugin, so they are not queued behind unrelated
+ * work of the app like they were on the shared AsyncTask executor.
+ * Lifecycle commands run first, then the commands starting, stopping or setting something, then the queries.
+ * Commands of the same priority run in the order they were submitted, starting and stopping share a
+ * priority so a stop never overtakes the start it belongs to. The time every command spent waiting and
+ * running is accounted per action.
+ */
+class CommandExecutor {
+
+    static final int PRIORITY_LIFECYCLE = 0;
+    static final int PRIORITY_CONTROL = 1;
+    static final int PRIORITY_QUERY = 2;
+
+    private static final int KEEP_ALIVE_SECONDS = 30;
+
+    private static final Set<String> LIFECYCLE_ACTIONS = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(
+            "onDomDelegateReady",
+            "registerDelegateCallbackId",
+            "enableDebugLogs",
+            "disableDebugLogs",
+            "enableDebugNotifications",
+            "disableDebugNotifications")));
+
+    private final AtomicLong sequence = new AtomicLong();
+    private final ConcurrentHashMap<String, CommandStats> stats = new ConcurrentHashMap<String, CommandStats>();
+    private final ThreadPoolExecutor executor;
+
+    CommandExecutor() {
+        executor = new ThreadPoolExecutor(1, 1, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                return new Thread(runnable, "LocationManager-commands");
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    static int priorityOf(String action) {
+        if (LIFECYCLE_ACTIONS.contains(action)) {
+            return PRIORITY_LIFECYCLE;
+        }
+        if (action.startsWith("start") || action.startsWith("stop") || action.startsWith("request")
+                || action.startsWith("set") || action.equals("enableBluetooth")
+                || action.equals("disableBluetooth")) {
+            return PRIORITY_CONTROL;
+        }
+        return PRIORITY_QUERY;
+    }
+
+    /*
+     * Queues the command, throws RejectedExecutionException once the executor has been shut down.
+     */
+    public void execute(String action, Runnable command) {
+        executor.execute(new PrioritizedCommand(action, priorityOf(action), sequence.getAndIncrement(), command));
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    /*
+     * Latency statistics per action, in milliseconds.
+     */
+    public JSONObject toJson() throws JSONException {
+        JSONObject json = new JSONObject();
+        for (CommandStats commandStats : stats.values()) {
+            json.put(commandStats.action, commandStats.toJson());
+        }
+        return json;
+    }
+
+    private CommandStats statsOf(String action) {
+        CommandStats commandStats = stats.get(action);
+        if (commandStats == null) {
+            final CommandStats created = new CommandStats(action);
+            commandStats = stats.putIfAbsent(action, created);
+            if (commandStats == null) {
+                commandStats = created;
+            }
+        }
+        return commandStats;
+    }
+
+    private final class PrioritizedCommand implements Runnable, Comparable<PrioritizedCommand> {
+
+        private final String action;
+        private final int priority;
+        private final long sequence;
+        private final Runnable command;
+        private final long submittedNanos = System.nanoTime();
+
+        PrioritizedCommand(String action, int priority, long sequence, Runnable command) {
+            this.action = action;
+            this.priority = priority;
+            this.sequence = sequence;
+            this.command = command;
+        }
+
+        @Override
+        public void run() {
+            final long startedNanos = System.nanoTime();
+            try {
+                command.run();
+            } finally {
+                statsOf(action).record(startedNanos - submittedNanos, System.nanoTime() - startedNanos);
+            }
+        }
+
+        @Override
+        public int compareTo(PrioritizedCommand other) {
+            if (priority != other.priority) {
+                return priority < other.priority ? -1 : 1;
+            }
+            return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+        }
+    }
+
+    private static final class CommandStats {
+
+        final String action;
+        final AtomicLong count = new AtomicLong();
+        final AtomicLong totalWaitNanos = new AtomicLong();
+        final AtomicLong maxWaitNanos = new AtomicLong();
+        final AtomicLong totalRunNanos = new AtomicLong();
+        final AtomicLong maxRunNanos = new AtomicLong();
+
+        CommandStats(String action) {
+            this.action = action;
+        }
+
+        void record(long waitNanos, long runNanos) {
+            count.incrementAndGet();
+            totalWaitNanos.addAndGet(waitNanos);
+            totalRunNanos.addAndGet(runNanos);
+            updateMax(maxWaitNanos, waitNanos);
+            updateMax(maxRunNanos, runNanos);
+        }
+
+        JSONObject toJson() throws JSONException {
+            final long commands = count.get();
+            JSONObject json = new JSONObject();
+            json.put("count", commands);
+            json.put("avgWaitMs", commands > 0 ? toMillis(totalWaitNanos.get() / commands) : 0);
+            json.put("maxWaitMs", toMillis(maxWaitNanos.get()));
+            json.put("avgRunMs", commands > 0 ? toMillis(totalRunNanos.get() / commands) : 0);
+            json.put("maxRunMs", toMillis(maxRunNanos.get()));
+            return json;
+        }
+
+        private static void updateMax(AtomicLong max, long value) {
+            long current = max.get();
+            while (value > current && !max.compareAndSet(current, value)) {
+                current = max.get();
+            }
+        }
+
+        private static double toMillis(long nanos) {
+            return nanos / 1000000.0;
+        }
+    }
+}
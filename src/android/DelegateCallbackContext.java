@@ -0,0 +1,67 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package com.unarin.cordova.beacon;
+
+import android.util.Log;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.CordovaWebView;
+import org.apache.cordova.PluginResult;
+
+/*
+ * Stands in for the delegate callback of the DOM before it is registered, so the regions restored at
+ * startup can queue their events right away. The events are only sent once the DOM is ready, by then
+ * registerDelegateCallbackId has set the callback they are forwarded to.
+ */
+class DelegateCallbackContext extends CallbackContext {
+
+    private static final String TAG = "com.unarin.beacon";
+
+    private volatile CallbackContext target;
+
+    DelegateCallbackContext(CordovaWebView webView) {
+        super("LocationManager-delegate", webView);
+    }
+
+    void setTarget(CallbackContext target) {
+        this.target = target;
+    }
+
+    @Override
+    public String getCallbackId() {
+        final CallbackContext current = target;
+        return current != null ? current.getCallbackId() : super.getCallbackId();
+    }
+
+    @Override
+    public boolean isFinished() {
+        final CallbackContext current = target;
+        return current != null && current.isFinished();
+    }
+
+    @Override
+    public void sendPluginResult(PluginResult pluginResult) {
+        final CallbackContext current = target;
+        if (current == null) {
+            Log.w(TAG, "Dropping an event, no delegate callback was registered by the DOM");
+            return;
+        }
+        current.sendPluginResult(pluginResult);
+    }
+}
@@ -0,0 +1,68 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package com.unarin.cordova.beacon;
+
+import java.util.Locale;
+
+/*
+ * What the DOM event queue does when it is full and another event has to be queued.
+ */
+enum EventQueueOverflowPolicy {
+
+    /*
+     * Discards the event that has been waiting in the queue for the longest time.
+     */
+    DROP_OLDEST("drop-oldest"),
+
+    /*
+     * Discards the oldest queued ranging event, falls back to DROP_OLDEST if there is none.
+     */
+    DROP_RANGING_FIRST("drop-ranging-first"),
+
+    /*
+     * Blocks the thread reporting the event until there is room in the queue, for up to a second, and
+     * drops the event if there is still none. Only applies to events reported off the main thread: the
+     * command thread (didStartMonitoringForRegion and start failures) and the thread of the monitoring
+     * event log (replayed events), which can afford to wait. The library reports ranging and monitoring
+     * on the main thread, which is never blocked, these events fall back to DROP_RANGING_FIRST.
+     */
+    BLOCK_PRODUCER("block-producer");
+
+    private final String configName;
+
+    EventQueueOverflowPolicy(String configName) {
+        this.configName = configName;
+    }
+
+    public String getConfigName() {
+        return configName;
+    }
+
+    public static EventQueueOverflowPolicy fromConfigName(String configName) {
+        if (configName != null) {
+            final String normalized = configName.trim().toLowerCase(Locale.US);
+            for (EventQueueOverflowPolicy policy : values()) {
+                if (policy.configName.equals(normalized)) {
+                    return policy;
+                }
+            }
+        }
+        throw new IllegalArgumentException("Unsupported event queue overflow policy: " + configName);
+    }
+}
@@ -0,0 +1,45 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package com.unarin.cordova.beacon;
+
+/*
+ * An event queued for the DOM, tagged with its type (the eventType the DOM receives, like didEnterRegion)
+ * so the event queue can account for it per type, and with the System.nanoTime() the library reported it
+ * at, to measure its latency until delivery.
+ */
+abstract class EventTask implements Runnable {
+
+    final String eventType;
+    final long ingressNanos;
+
+    EventTask(String eventType) {
+        this(eventType, System.nanoTime());
+    }
+
+    EventTask(String eventType, long ingressNanos) {
+        this.eventType = eventType;
+        this.ingressNanos = ingressNanos;
+    }
+
+    /*
+     * Called instead of run() when the event queue drops this task.
+     */
+    public void discard() {
+    }
+}
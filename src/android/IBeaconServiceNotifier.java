@@ -19,6 +19,7 @@
 package com.unarin.cordova.beacon;
 
 import org.altbeacon.beacon.Region;
+import org.json.JSONObject;
 
 /*
  * Interface for addition iOS events
@@ -44,5 +45,10 @@ public interface IBeaconServiceNotifier {
      * Most likely when Bluetooth aerial is switched on or off
      */
     public void didChangeAuthorizationStatus(String status);
+
+    /*
+     * Periodic snapshot of the pipeline metrics, if enabled
+     */
+    public void didUpdateMetrics(JSONObject metrics);
 }
 
@@ -0,0 +1,84 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package com.unarin.cordova.beacon;
+
+import org.altbeacon.beacon.Beacon;
+import org.altbeacon.beacon.Identifier;
+import org.altbeacon.beacon.Region;
+
+/*
+ * The (uuid, major, minor) identifiers of a beacon or a region as a map key. It holds the Identifier
+ * objects themselves, building a key doesn't format or copy anything. A null identifier of a region
+ * stands for any value.
+ */
+final class IdentifierKey {
+
+    private final Identifier uuid;
+    private final Identifier major;
+    private final Identifier minor;
+    private final int hashCode;
+
+    IdentifierKey(Identifier uuid, Identifier major, Identifier minor) {
+        this.uuid = uuid;
+        this.major = major;
+        this.minor = minor;
+
+        int result = uuid != null ? uuid.hashCode() : 0;
+        result = 31 * result + (major != null ? major.hashCode() : 0);
+        result = 31 * result + (minor != null ? minor.hashCode() : 0);
+        this.hashCode = result;
+    }
+
+    static IdentifierKey of(Beacon beacon) {
+        return new IdentifierKey(beacon.getId1(), beacon.getId2(), beacon.getId3());
+    }
+
+    static IdentifierKey of(Region region) {
+        return new IdentifierKey(region.getId1(), region.getId2(), region.getId3());
+    }
+
+    static boolean sameIdentifier(Identifier a, Identifier b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof IdentifierKey)) {
+            return false;
+        }
+        final IdentifierKey other = (IdentifierKey) o;
+        return hashCode == other.hashCode
+                && sameIdentifier(uuid, other.uuid)
+                && sameIdentifier(major, other.major)
+                && sameIdentifier(minor, other.minor);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        return uuid + ":" + major + ":" + minor;
+    }
+}
@@ -0,0 +1,113 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package com.unarin.cordova.beacon;
+
+import android.os.SystemClock;
+
+import org.altbeacon.beacon.service.RssiFilter;
+
+/*
+ * One dimensional Kalman filter for the RSSI of a beacon, selected with RssiFilter=kalman.
+ * Compared to the running average it converges within a few samples after the device moved, and it is
+ * smoother than ARMA because noisy readings are weighed by the measurement noise.
+ *
+ * The library creates one instance per beacon via reflection, so its noise parameters are static like
+ * the sample expiration of RunningAverageRssiFilter. Per region smoothing (RegionRssiSmoother) passes
+ * them to the constructor instead. The state of a beacon is kept in primitive fields, adding a
+ * measurement doesn't allocate.
+ */
+public class KalmanRssiFilter implements RssiFilter {
+
+    public static final double DEFAULT_PROCESS_NOISE = 0.5;
+    public static final double DEFAULT_MEASUREMENT_NOISE = 4.0;
+    public static final long DEFAULT_SAMPLE_EXPIRATION_MILLISECONDS = 20000;
+
+    private static volatile double configuredProcessNoise = DEFAULT_PROCESS_NOISE;
+    private static volatile double configuredMeasurementNoise = DEFAULT_MEASUREMENT_NOISE;
+    private static volatile long configuredSampleExpirationMilliseconds = DEFAULT_SAMPLE_EXPIRATION_MILLISECONDS;
+
+    private final double processNoise;
+    private final double measurementNoise;
+    private final long sampleExpirationMilliseconds;
+
+    private double estimate;
+    private double errorCovariance;
+    private int measurementCount;
+    private long lastMeasurementTime;
+
+    public KalmanRssiFilter() {
+        this(configuredProcessNoise, configuredMeasurementNoise, configuredSampleExpirationMilliseconds);
+    }
+
+    KalmanRssiFilter(double processNoise, double measurementNoise, long sampleExpirationMilliseconds) {
+        this.processNoise = processNoise;
+        this.measurementNoise = measurementNoise;
+        this.sampleExpirationMilliseconds = sampleExpirationMilliseconds;
+    }
+
+    /* How much the RSSI is expected to change between two samples, higher values follow movement faster. */
+    public static void setProcessNoise(double noise) {
+        configuredProcessNoise = noise;
+    }
+
+    /* How noisy a single RSSI reading is, higher values smooth more. */
+    public static void setMeasurementNoise(double noise) {
+        configuredMeasurementNoise = noise;
+    }
+
+    /* A beacon without a sample for this long starts over from its next sample. */
+    public static void setSampleExpirationMilliseconds(long milliseconds) {
+        configuredSampleExpirationMilliseconds = milliseconds;
+    }
+
+    @Override
+    public synchronized void addMeasurement(Integer rssi) {
+        final long now = SystemClock.elapsedRealtime();
+        if (measurementCount == 0 || now - lastMeasurementTime > sampleExpirationMilliseconds) {
+            estimate = rssi;
+            errorCovariance = measurementNoise;
+            measurementCount = 1;
+        } else {
+            // Predict: the RSSI is modelled as constant, only the uncertainty grows.
+            final double predictedCovariance = errorCovariance + processNoise;
+            // Update
+            final double gain = predictedCovariance / (predictedCovariance + measurementNoise);
+            estimate += gain * (rssi - estimate);
+            errorCovariance = (1 - gain) * predictedCovariance;
+            measurementCount++;
+        }
+        lastMeasurementTime = now;
+    }
+
+    @Override
+    public synchronized boolean noMeasurementsAvailable() {
+        return measurementCount == 0
+                || SystemClock.elapsedRealtime() - lastMeasurementTime > sampleExpirationMilliseconds;
+    }
+
+    @Override
+    public synchronized double calculateRssi() {
+        return estimate;
+    }
+
+    @Override
+    public synchronized int getMeasurementCount() {
+        return measurementCount;
+    }
+}
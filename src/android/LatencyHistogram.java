@@ -0,0 +1,126 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package com.unarin.cordova.beacon;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * Latency histogram of fixed size with logarithmic buckets: every power of two of nanoseconds is split
+ * into SUB_BUCKETS buckets, so a percentile is off by at most a quarter of its value. Latencies of an
+ * hour or more end up in the last bucket. Recording is lock free, reading while recording gives a
+ * slightly inconsistent but usable snapshot.
+ */
+class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 42; // 2^42 ns, about 73 minutes
+    static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0; // can't happen with System.nanoTime(), but keeps the buckets sane
+        }
+        buckets.incrementAndGet(indexOf(nanos));
+        count.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+
+        long current = maxNanos.get();
+        while (nanos > current && !maxNanos.compareAndSet(current, nanos)) {
+            current = maxNanos.get();
+        }
+    }
+
+    long getCount() {
+        return count.get();
+    }
+
+    long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    double getAverageNanos() {
+        final long samples = count.get();
+        return samples > 0 ? (double) totalNanos.get() / samples : 0;
+    }
+
+    /*
+     * Returns the upper bound of the bucket holding the given percentile (0 < percentile <= 100), never
+     * more than the maximum recorded.
+     */
+    long getPercentileNanos(double percentile) {
+        long samples = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            samples += buckets.get(i);
+        }
+        if (samples == 0) {
+            return 0;
+        }
+
+        final long rank = Math.max(1, (long) Math.ceil(samples * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(i), maxNanos.get());
+            }
+        }
+        return maxNanos.get();
+    }
+
+    JSONObject toJson() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("count", getCount());
+        json.put("avgMs", getAverageNanos() / 1000000.0);
+        json.put("p50Ms", getPercentileNanos(50) / 1000000.0);
+        json.put("p99Ms", getPercentileNanos(99) / 1000000.0);
+        json.put("maxMs", getMaxNanos() / 1000000.0);
+        return json;
+    }
+
+    static int indexOf(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) nanos;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        final int subBucket = (int) ((nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+        return Math.min((exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket, BUCKETS - 1);
+    }
+
+    static long upperBoundOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        if (index == BUCKETS - 1) {
+            return Long.MAX_VALUE;
+        }
+        final int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        final long subBucket = index % SUB_BUCKETS;
+        return ((SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+}
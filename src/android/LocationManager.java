@@ -32,9 +32,9 @@ import android.content.Intent;
 import android.content.IntentFilter;
 import android.content.ServiceConnection;
 import android.content.pm.PackageManager;
-import android.os.AsyncTask;
 import android.os.Build;
 import android.os.Handler;
+import android.os.Looper;
 import android.os.RemoteException;
 import android.util.Log;
 
@@ -48,7 +48,6 @@ import android.bluetooth.le.AdvertiseCallback;
 import android.bluetooth.le.AdvertiseSettings;
 
 import org.altbeacon.beacon.BleNotAvailableException;
-import org.altbeacon.beacon.Identifier;
 import org.altbeacon.beacon.MonitorNotifier;
 import org.altbeacon.beacon.RangeNotifier;
 import org.altbeacon.beacon.Region;
@@ -64,13 +63,22 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.File;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.nio.charset.Charset;
 import java.security.InvalidKeyException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 
 @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
 public class LocationManager extends CordovaPlugin implements BeaconConsumer {
@@ -84,23 +92,126 @@ public class LocationManager extends CordovaPlugin implements BeaconConsumer {
     private static final int DEFAULT_SAMPLE_EXPIRATION_MILLISECOND = 20000;
     private static final String ENABLE_ARMA_FILTER_NAME = "com.unarin.cordova.beacon.android.altbeacon.EnableArmaFilter";
     private static final boolean DEFAULT_ENABLE_ARMA_FILTER = false;
+    private static final String RSSI_FILTER_NAME = "com.unarin.cordova.beacon.android.altbeacon.RssiFilter";
+    private static final String RSSI_FILTER_RUNNING_AVERAGE = "running-average";
+    private static final String RSSI_FILTER_ARMA = "arma";
+    private static final String RSSI_FILTER_KALMAN = "kalman";
+    private static final String KALMAN_PROCESS_NOISE_NAME = "com.unarin.cordova.beacon.android.altbeacon.KalmanProcessNoise";
+    private static final String KALMAN_MEASUREMENT_NOISE_NAME = "com.unarin.cordova.beacon.android.altbeacon.KalmanMeasurementNoise";
+    private static final String PROXIMITY_HYSTERESIS_NAME = "com.unarin.cordova.beacon.android.altbeacon.ProximityHysteresis";
+    private static final boolean DEFAULT_PROXIMITY_HYSTERESIS = false;
+    private static final String PROXIMITY_IMMEDIATE_NEAR_BAND_NAME = "com.unarin.cordova.beacon.android.altbeacon.ProximityImmediateNearBand";
+    private static final String PROXIMITY_NEAR_FAR_BAND_NAME = "com.unarin.cordova.beacon.android.altbeacon.ProximityNearFarBand";
+    private static final String PROXIMITY_MIN_DWELL_NAME = "com.unarin.cordova.beacon.android.altbeacon.ProximityMinDwellMilliseconds";
+    private static final String DURABLE_MONITORING_EVENTS_NAME = "com.unarin.cordova.beacon.android.altbeacon.DurableMonitoringEvents";
+    private static final boolean DEFAULT_DURABLE_MONITORING_EVENTS = false;
+    private static final String MONITORING_EVENT_LOG_FILE = "com.unarin.beacon.monitoring-events.log";
+    private static final String PERSIST_REGIONS_NAME = "com.unarin.cordova.beacon.android.altbeacon.PersistRegions";
+    private static final boolean DEFAULT_PERSIST_REGIONS = false;
+    private static final String REGION_STORE_FILE = "com.unarin.beacon.regions";
+    private static final String LAZY_INITIALIZATION_NAME = "com.unarin.cordova.beacon.android.altbeacon.LazyInitialization";
+    private static final boolean DEFAULT_LAZY_INITIALIZATION = false;
+    private static final long BEACON_SERVICE_CONNECT_TIMEOUT_MILLIS = 5000;
+    private static final String METRICS_EVENT_INTERVAL_NAME = "com.unarin.cordova.beacon.android.altbeacon.MetricsEventInterval";
+    private static final int DEFAULT_METRICS_EVENT_INTERVAL = 0; // no metrics events
     private static final String REQUEST_BT_PERMISSION_NAME = "com.unarin.cordova.beacon.android.altbeacon.RequestBtPermission";
     private static final boolean DEFAULT_REQUEST_BT_PERMISSION = true;
+    private static final String COALESCE_RANGING_EVENTS_NAME = "com.unarin.cordova.beacon.android.altbeacon.CoalesceRangingEvents";
+    private static final boolean DEFAULT_COALESCE_RANGING_EVENTS = false;
+    private static final String BATCH_RANGING_EVENTS_NAME = "com.unarin.cordova.beacon.android.altbeacon.BatchRangingEvents";
+    private static final boolean DEFAULT_BATCH_RANGING_EVENTS = false;
+    private static final String RANGING_BATCH_WINDOW_NAME = "com.unarin.cordova.beacon.android.altbeacon.RangingBatchWindowMilliseconds";
+    private static final int DEFAULT_RANGING_BATCH_WINDOW = 100;
+    private static final String RANGING_WIRE_FORMAT_NAME = "com.unarin.cordova.beacon.android.altbeacon.RangingWireFormat";
+    private static final String RANGING_WIRE_FORMAT_BINARY = "binary";
+    private static final String DEFAULT_RANGING_WIRE_FORMAT = "json";
+    private static final String EVENT_QUEUE_CAPACITY_NAME = "com.unarin.cordova.beacon.android.altbeacon.EventQueueCapacity";
+    private static final int DEFAULT_EVENT_QUEUE_CAPACITY = 0; // unbounded
+    private static final String EVENT_QUEUE_OVERFLOW_POLICY_NAME = "com.unarin.cordova.beacon.android.altbeacon.EventQueueOverflowPolicy";
+    private static final String DEFAULT_EVENT_QUEUE_OVERFLOW_POLICY = EventQueueOverflowPolicy.DROP_OLDEST.getConfigName();
     private static final int DEFAULT_FOREGROUND_SCAN_PERIOD = 1100;
     private static int CDV_LOCATION_MANAGER_DOM_DELEGATE_TIMEOUT = 30;
     private static final int BUILD_VERSION_CODES_M = 23;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String ENABLE_DEBUG_LOGS_NAME = "com.unarin.cordova.beacon.android.altbeacon.EnableDebugLogs";
+    private static final boolean DEFAULT_ENABLE_DEBUG_LOGS = false;
+    private static final String TRACE_BUFFER_SIZE_NAME = "com.unarin.cordova.beacon.android.altbeacon.TraceBufferSize";
+    private static final int DEFAULT_TRACE_BUFFER_SIZE = 256;
+    private static final String BACKGROUND_MODE_NAME = "com.unarin.cordova.beacon.android.altbeacon.BackgroundMode";
+    private static final boolean DEFAULT_BACKGROUND_MODE = false;
+    private static final String ADAPTIVE_SCAN_PERIODS_NAME = "com.unarin.cordova.beacon.android.altbeacon.AdaptiveScanPeriods";
+    private static final boolean DEFAULT_ADAPTIVE_SCAN_PERIODS = false;
+    private static final String ADAPTIVE_MAX_BETWEEN_SCAN_PERIOD_NAME = "com.unarin.cordova.beacon.android.altbeacon.AdaptiveMaxBetweenScanPeriod";
+    private static final int DEFAULT_ADAPTIVE_MAX_BETWEEN_SCAN_PERIOD = 30000;
+    private static final String ADAPTIVE_DENSE_BEACON_COUNT_NAME = "com.unarin.cordova.beacon.android.altbeacon.AdaptiveDenseBeaconCount";
+    private static final int DEFAULT_ADAPTIVE_DENSE_BEACON_COUNT = 5;
+
+    // Set to false to strip every debug log statement from the build, the guarded calls compile to nothing.
+    private static final boolean DEBUG_LOGGING = true;
 
     private BeaconTransmitter beaconTransmitter;
     private BeaconManager iBeaconManager;
+    private boolean lazyInitialization = DEFAULT_LAZY_INITIALIZATION;
+    private boolean requestPermission = DEFAULT_REQUEST_BT_PERMISSION;
+    private volatile boolean beaconServiceBound;
+    private volatile boolean beaconServiceConnected;
+    private final List<ParkedCommand> parkedCommands = new ArrayList<ParkedCommand>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable parkedCommandsTimeout = new Runnable() {
+        @Override
+        public void run() {
+            Log.w(TAG, "The beacon service didn't connect within " + BEACON_SERVICE_CONNECT_TIMEOUT_MILLIS + " ms");
+            runParkedCommands();
+        }
+    };
+    private volatile boolean destroyed;
+    private final Object bluetoothListenerLock = new Object();
     private BlockingQueue<Runnable> queue;
     private PausableThreadPoolExecutor threadPoolExecutor;
-
-    private boolean debugEnabled = true;
+    private final CommandExecutor commandExecutor = new CommandExecutor();
+    private final PipelineMetrics pipelineMetrics = new PipelineMetrics();
+    private Handler metricsHandler;
+    private Runnable metricsEventTask;
+    private RangingEventCoalescer rangingEventCoalescer;
+    private boolean batchRangingEvents = DEFAULT_BATCH_RANGING_EVENTS;
+    private int rangingBatchWindow = DEFAULT_RANGING_BATCH_WINDOW;
+    private RangingFrameBatcher rangingFrameBatcher;
+    private AdaptiveScanScheduler adaptiveScanScheduler;
+    private ScanProfile scanProfile;
+    private boolean backgroundMode = DEFAULT_BACKGROUND_MODE;
+    private ProximityClassifier proximityClassifier = ProximityClassifier.BY_DISTANCE;
+    private MonitoringEventLog monitoringEventLog;
+    private volatile RegionStore regionStore;
+    private DelegateCallbackContext restoredDelegateCallbackContext;
+    private boolean delegateRegistered;
+    private final Object delegateLock = new Object();
+    private boolean binaryRangingWireFormat = false;
+    private int eventQueueCapacity = DEFAULT_EVENT_QUEUE_CAPACITY;
+    private EventQueueOverflowPolicy eventQueueOverflowPolicy = EventQueueOverflowPolicy.DROP_OLDEST;
+    private final RegionRegistry regionRegistry = new RegionRegistry();
+    private final MonitoringDebouncer monitoringDebouncer = new MonitoringDebouncer(new MonitoringDebouncer.Listener() {
+        @Override
+        public void onSuppressed(String regionId, int state) {
+            if (isDebugLogEnabled()) {
+                debugLog("Suppressed monitoring transition to '" + nameOfRegionState(state) + "' for region: " + regionId);
+            }
+            traceBuffer.record("suppressedTransition", regionId, state);
+        }
+    });
+    private final ConcurrentHashMap<String, RangingDeltaTracker> rangingDeltaTrackers = new ConcurrentHashMap<String, RangingDeltaTracker>();
+    private final ConcurrentHashMap<String, RangingFilter> rangingFilters = new ConcurrentHashMap<String, RangingFilter>();
+    private final ConcurrentHashMap<String, NearestBeaconTracker> nearestBeaconTrackers = new ConcurrentHashMap<String, NearestBeaconTracker>();
+    private final ConcurrentHashMap<String, RegionRssiSmoother> regionRssiSmoothers = new ConcurrentHashMap<String, RegionRssiSmoother>();
+    private final ConcurrentHashMap<String, ProximityChangeTracker> proximityChangeTrackers = new ConcurrentHashMap<String, ProximityChangeTracker>();
+    private final Set<String> silentRangedRegions = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    private volatile boolean debugEnabled = DEFAULT_ENABLE_DEBUG_LOGS;
+    private TraceBuffer traceBuffer = new TraceBuffer(DEFAULT_TRACE_BUFFER_SIZE);
     private IBeaconServiceNotifier beaconServiceNotifier;
 
     //listener for changes in state for system Bluetooth service
     private BroadcastReceiver broadcastReceiver;
-    private BluetoothAdapter bluetoothAdapter;
+    private volatile BluetoothAdapter bluetoothAdapter; // looked up on a pool thread, see initialize
 
 
     /**
@@ -133,6 +244,31 @@ public class LocationManager extends CordovaPlugin implements BeaconConsumer {
         iBeaconManager = BeaconManager.getInstanceForApplication(cordovaActivity);
         iBeaconManager.setForegroundBetweenScanPeriod(foregroundBetweenScanPeriod);
         iBeaconManager.setForegroundScanPeriod(foregroundScanPeriod);
+        scanProfile = new ScanProfile(ScanProfile.CUSTOM, foregroundScanPeriod, foregroundBetweenScanPeriod,
+                iBeaconManager.getBackgroundScanPeriod(), iBeaconManager.getBackgroundBetweenScanPeriod());
+
+        backgroundMode = this.preferences.getBoolean(
+                BACKGROUND_MODE_NAME, DEFAULT_BACKGROUND_MODE);
+
+        Log.i(TAG, "Determined config value BACKGROUND_MODE: " + String.valueOf(backgroundMode));
+
+        final boolean adaptiveScanPeriods = this.preferences.getBoolean(
+                ADAPTIVE_SCAN_PERIODS_NAME, DEFAULT_ADAPTIVE_SCAN_PERIODS);
+
+        final int adaptiveMaxBetweenScanPeriod = this.preferences.getInteger(
+                ADAPTIVE_MAX_BETWEEN_SCAN_PERIOD_NAME, DEFAULT_ADAPTIVE_MAX_BETWEEN_SCAN_PERIOD);
+
+        final int adaptiveDenseBeaconCount = this.preferences.getInteger(
+                ADAPTIVE_DENSE_BEACON_COUNT_NAME, DEFAULT_ADAPTIVE_DENSE_BEACON_COUNT);
+
+        Log.i(TAG, "Determined config value ADAPTIVE_SCAN_PERIODS: " + String.valueOf(adaptiveScanPeriods) +
+                ", ADAPTIVE_MAX_BETWEEN_SCAN_PERIOD: " + String.valueOf(adaptiveMaxBetweenScanPeriod) +
+                ", ADAPTIVE_DENSE_BEACON_COUNT: " + String.valueOf(adaptiveDenseBeaconCount));
+
+        if (adaptiveScanPeriods) {
+            initAdaptiveScanScheduler(foregroundScanPeriod, foregroundBetweenScanPeriod,
+                    adaptiveMaxBetweenScanPeriod, adaptiveDenseBeaconCount);
+        }
 
         final int sampleExpirationMilliseconds = this.preferences.getInteger(
                 SAMPLE_EXPIRATION_MILLISECOND, DEFAULT_SAMPLE_EXPIRATION_MILLISECOND);
@@ -143,45 +279,256 @@ public class LocationManager extends CordovaPlugin implements BeaconConsumer {
         final boolean enableArmaFilter = this.preferences.getBoolean(
                 ENABLE_ARMA_FILTER_NAME, DEFAULT_ENABLE_ARMA_FILTER);
 
-        if(enableArmaFilter){
+        // RssiFilter takes precedence, EnableArmaFilter is kept for existing configurations.
+        final String rssiFilter = this.preferences.getString(
+                RSSI_FILTER_NAME, enableArmaFilter ? RSSI_FILTER_ARMA : RSSI_FILTER_RUNNING_AVERAGE);
+
+        Log.i(TAG, "Determined config value RSSI_FILTER: " + rssiFilter);
+
+        if (RSSI_FILTER_KALMAN.equalsIgnoreCase(rssiFilter)) {
+               final double processNoise = this.preferences.getDouble(
+                       KALMAN_PROCESS_NOISE_NAME, KalmanRssiFilter.DEFAULT_PROCESS_NOISE);
+               final double measurementNoise = this.preferences.getDouble(
+                       KALMAN_MEASUREMENT_NOISE_NAME, KalmanRssiFilter.DEFAULT_MEASUREMENT_NOISE);
+
+               Log.i(TAG, "Determined config value KALMAN_PROCESS_NOISE: " + String.valueOf(processNoise) +
+                       ", KALMAN_MEASUREMENT_NOISE: " + String.valueOf(measurementNoise));
+
+               KalmanRssiFilter.setProcessNoise(processNoise);
+               KalmanRssiFilter.setMeasurementNoise(measurementNoise);
+               KalmanRssiFilter.setSampleExpirationMilliseconds(sampleExpirationMilliseconds);
+               iBeaconManager.setRssiFilterImplClass(KalmanRssiFilter.class);
+        }
+        else if(RSSI_FILTER_ARMA.equalsIgnoreCase(rssiFilter)){
                iBeaconManager.setRssiFilterImplClass(ArmaRssiFilter.class);
         }
         else{
+               if (!RSSI_FILTER_RUNNING_AVERAGE.equalsIgnoreCase(rssiFilter)) {
+                   Log.w(TAG, "Unsupported RSSI filter: " + rssiFilter + ", falling back to " + RSSI_FILTER_RUNNING_AVERAGE);
+               }
                iBeaconManager.setRssiFilterImplClass(RunningAverageRssiFilter.class);
                RunningAverageRssiFilter.setSampleExpirationMilliseconds(sampleExpirationMilliseconds);
         }
         RangedBeacon.setSampleExpirationMilliseconds(sampleExpirationMilliseconds);
 
+        final boolean proximityHysteresis = this.preferences.getBoolean(
+                PROXIMITY_HYSTERESIS_NAME, DEFAULT_PROXIMITY_HYSTERESIS);
+
+        Log.i(TAG, "Determined config value PROXIMITY_HYSTERESIS: " + String.valueOf(proximityHysteresis));
+
+        if (proximityHysteresis) {
+            final double immediateNearBand = this.preferences.getDouble(
+                    PROXIMITY_IMMEDIATE_NEAR_BAND_NAME, ProximityHysteresis.DEFAULT_IMMEDIATE_NEAR_BAND);
+            final double nearFarBand = this.preferences.getDouble(
+                    PROXIMITY_NEAR_FAR_BAND_NAME, ProximityHysteresis.DEFAULT_NEAR_FAR_BAND);
+            final int minDwell = this.preferences.getInteger(
+                    PROXIMITY_MIN_DWELL_NAME, (int) ProximityHysteresis.DEFAULT_MIN_DWELL_MILLIS);
+
+            Log.i(TAG, "Determined config value PROXIMITY_IMMEDIATE_NEAR_BAND: " + String.valueOf(immediateNearBand) +
+                    ", PROXIMITY_NEAR_FAR_BAND: " + String.valueOf(nearFarBand) +
+                    ", PROXIMITY_MIN_DWELL: " + String.valueOf(minDwell));
+
+            proximityClassifier = new ProximityHysteresis(immediateNearBand, nearFarBand, minDwell);
+        }
+
+        debugEnabled = this.preferences.getBoolean(
+                ENABLE_DEBUG_LOGS_NAME, DEFAULT_ENABLE_DEBUG_LOGS);
+
+        final int traceBufferSize = this.preferences.getInteger(
+                TRACE_BUFFER_SIZE_NAME, DEFAULT_TRACE_BUFFER_SIZE);
+        traceBuffer = new TraceBuffer(Math.max(0, traceBufferSize));
+
+        Log.i(TAG, "Determined config value ENABLE_DEBUG_LOGS: " + String.valueOf(debugEnabled) +
+                ", TRACE_BUFFER_SIZE: " + String.valueOf(traceBufferSize));
+
+        final boolean coalesceRangingEvents = this.preferences.getBoolean(
+                COALESCE_RANGING_EVENTS_NAME, DEFAULT_COALESCE_RANGING_EVENTS);
+
+        Log.i(TAG, "Determined config value COALESCE_RANGING_EVENTS: " +
+                String.valueOf(coalesceRangingEvents));
+
+        if (coalesceRangingEvents) {
+            rangingEventCoalescer = new RangingEventCoalescer();
+        }
+
+        batchRangingEvents = this.preferences.getBoolean(
+                BATCH_RANGING_EVENTS_NAME, DEFAULT_BATCH_RANGING_EVENTS);
+
+        rangingBatchWindow = this.preferences.getInteger(
+                RANGING_BATCH_WINDOW_NAME, DEFAULT_RANGING_BATCH_WINDOW);
+
+        Log.i(TAG, "Determined config value BATCH_RANGING_EVENTS: " +
+                String.valueOf(batchRangingEvents) + ", RANGING_BATCH_WINDOW: " +
+                String.valueOf(rangingBatchWindow));
+
+        final String rangingWireFormat = this.preferences.getString(
+                RANGING_WIRE_FORMAT_NAME, DEFAULT_RANGING_WIRE_FORMAT);
+        binaryRangingWireFormat = RANGING_WIRE_FORMAT_BINARY.equalsIgnoreCase(rangingWireFormat);
+
+        Log.i(TAG, "Determined config value RANGING_WIRE_FORMAT: " + rangingWireFormat);
+
+        eventQueueCapacity = this.preferences.getInteger(
+                EVENT_QUEUE_CAPACITY_NAME, DEFAULT_EVENT_QUEUE_CAPACITY);
+
+        final String eventQueueOverflowPolicyName = this.preferences.getString(
+                EVENT_QUEUE_OVERFLOW_POLICY_NAME, DEFAULT_EVENT_QUEUE_OVERFLOW_POLICY);
+
+        try {
+            eventQueueOverflowPolicy = EventQueueOverflowPolicy.fromConfigName(eventQueueOverflowPolicyName);
+        } catch (IllegalArgumentException e) {
+            Log.w(TAG, e.getMessage() + ", falling back to " + DEFAULT_EVENT_QUEUE_OVERFLOW_POLICY);
+            eventQueueOverflowPolicy = EventQueueOverflowPolicy.DROP_OLDEST;
+        }
+
+        Log.i(TAG, "Determined config value EVENT_QUEUE_CAPACITY: " +
+                String.valueOf(eventQueueCapacity) + ", EVENT_QUEUE_OVERFLOW_POLICY: " +
+                eventQueueOverflowPolicy.getConfigName());
+
+        final boolean durableMonitoringEvents = this.preferences.getBoolean(
+                DURABLE_MONITORING_EVENTS_NAME, DEFAULT_DURABLE_MONITORING_EVENTS);
+
+        Log.i(TAG, "Determined config value DURABLE_MONITORING_EVENTS: " + String.valueOf(durableMonitoringEvents));
+
+        if (durableMonitoringEvents) {
+            // Read and compacted on the thread of the log, well before the first monitoring event.
+            monitoringEventLog = MonitoringEventLog.open(new File(cordovaActivity.getFilesDir(), MONITORING_EVENT_LOG_FILE));
+        }
+
+        final boolean persistRegions = this.preferences.getBoolean(
+                PERSIST_REGIONS_NAME, DEFAULT_PERSIST_REGIONS);
+
+        Log.i(TAG, "Determined config value PERSIST_REGIONS: " + String.valueOf(persistRegions));
+
+        if (persistRegions) {
+            // Read in the background, the regions are started again from the command thread.
+            regionStore = RegionStore.open(new File(cordovaActivity.getFilesDir(), REGION_STORE_FILE),
+                    new RegionStore.RestoreListener() {
+                        @Override
+                        public void onRestored(List<RegionStore.StoredRegion> regions) {
+                            restoreRegions(regions);
+                        }
+                    });
+        }
+
+        final int metricsEventInterval = this.preferences.getInteger(
+                METRICS_EVENT_INTERVAL_NAME, DEFAULT_METRICS_EVENT_INTERVAL);
+
+        Log.i(TAG, "Determined config value METRICS_EVENT_INTERVAL: " + String.valueOf(metricsEventInterval));
+
+        if (metricsEventInterval > 0) {
+            initMetricsEvents(metricsEventInterval);
+        }
+
+        lazyInitialization = this.preferences.getBoolean(
+                LAZY_INITIALIZATION_NAME, DEFAULT_LAZY_INITIALIZATION);
+
+        requestPermission = this.preferences.getBoolean(
+                REQUEST_BT_PERMISSION_NAME, DEFAULT_REQUEST_BT_PERMISSION);
+
+        Log.i(TAG, "Determined config value LAZY_INITIALIZATION: " + String.valueOf(lazyInitialization));
+
+        if (lazyInitialization) {
+            initEventQueue();
+            pauseEventPropagationToDom(); // Before the DOM is loaded we'll just keep collecting the events and fire them later.
+
+            // The rest of the setup doesn't need the UI thread, the service is bound by the first start* action.
+            cordova.getThreadPool().execute(new Runnable() {
+                public void run() {
+                    synchronized (bluetoothListenerLock) {
+                        if (destroyed) {
+                            return; // onDestroy already ran, the receiver would never be unregistered
+                        }
+                        initBluetoothListener();
+                    }
+                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+                        initBluetoothAdapter();
+                    }
+                }
+            });
+            return;
+        }
+
         initBluetoothListener();
         initEventQueue();
         pauseEventPropagationToDom(); // Before the DOM is loaded we'll just keep collecting the events and fire them later.
 
         initLocationManager();
 
-        debugEnabled = true;
-
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
             initBluetoothAdapter();
         }
         //TODO AddObserver when page loaded
 
-        final boolean requestPermission = this.preferences.getBoolean(
-                REQUEST_BT_PERMISSION_NAME, DEFAULT_REQUEST_BT_PERMISSION);
-           
         if(requestPermission)
               tryToRequestMarshmallowLocationPermission();
     }
 
+    /**
+     * Called when the activity goes into the background. With the BackgroundMode preference the
+     * library switches to the background scan periods until the activity is resumed.
+     *
+     * @param multitasking Whether the activity keeps running in the background.
+     */
+    @Override
+    public void onPause(boolean multitasking) {
+        super.onPause(multitasking);
+        setBackgroundMode(true);
+    }
+
+    /**
+     * Called when the activity comes back to the foreground, the foreground scan periods apply again.
+     *
+     * @param multitasking Whether the activity kept running in the background.
+     */
+    @Override
+    public void onResume(boolean multitasking) {
+        super.onResume(multitasking);
+        setBackgroundMode(false);
+    }
+
+    private void setBackgroundMode(boolean background) {
+        if (!backgroundMode || iBeaconManager == null) {
+            return;
+        }
+        iBeaconManager.setBackgroundMode(background);
+        traceBuffer.record("setBackgroundMode", null, background ? 1 : 0);
+        if (isDebugLogEnabled()) {
+            debugLog("Switched to the " + (background ? "background" : "foreground") + " scan periods");
+        }
+    }
+
     /**
      * The final call you receive before your activity is destroyed.
      */
     @Override
     public void onDestroy() {
-        iBeaconManager.unbind(this);
+        synchronized (this) { // no binding from now on, see bindBeaconService
+            destroyed = true;
+        }
+        if (beaconServiceBound) {
+            iBeaconManager.unbind(this);
+        }
+        commandExecutor.shutdown();
+        runParkedCommands(); // rejected now, their callbacks get an error
+        if (adaptiveScanScheduler != null) {
+            adaptiveScanScheduler.stop();
+        }
+        if (monitoringEventLog != null) {
+            // Shuts down the thread of the log and its periodic force, even if it is still being opened.
+            monitoringEventLog.close();
+        }
+        if (regionStore != null) {
+            regionStore.close();
+        }
+        if (metricsHandler != null) {
+            metricsHandler.removeCallbacks(metricsEventTask);
+        }
 
-        if (broadcastReceiver != null) {
-            cordova.getActivity().unregisterReceiver(broadcastReceiver);
-            broadcastReceiver = null;
+        synchronized (bluetoothListenerLock) {
+            if (broadcastReceiver != null) {
+                cordova.getActivity().unregisterReceiver(broadcastReceiver);
+                broadcastReceiver = null;
+            }
         }
 
         super.onDestroy();
@@ -212,13 +559,21 @@ public class LocationManager extends CordovaPlugin implements BeaconConsumer {
         } else if (action.equals("appendToDeviceLog")) {
             appendToDeviceLog(args.optString(0), callbackContext);
         } else if (action.equals("startMonitoringForRegion")) {
-            startMonitoringForRegion(args.optJSONObject(0), callbackContext);
+            startMonitoringForRegion(args.optJSONObject(0), args.optJSONObject(1), callbackContext);
         } else if (action.equals("stopMonitoringForRegion")) {
             stopMonitoringForRegion(args.optJSONObject(0), callbackContext);
         } else if (action.equals("startRangingBeaconsInRegion")) {
-            startRangingBeaconsInRegion(args.optJSONObject(0), callbackContext);
+            startRangingBeaconsInRegion(args.optJSONObject(0), args.optJSONObject(1), callbackContext);
         } else if (action.equals("stopRangingBeaconsInRegion")) {
             stopRangingBeaconsInRegion(args.optJSONObject(0), callbackContext);
+        } else if (action.equals("startMonitoringForRegions")) {
+            startMonitoringForRegions(args.optJSONArray(0), args.optJSONObject(1), callbackContext);
+        } else if (action.equals("stopMonitoringForRegions")) {
+            stopMonitoringForRegions(args.optJSONArray(0), callbackContext);
+        } else if (action.equals("startRangingBeaconsInRegions")) {
+            startRangingBeaconsInRegions(args.optJSONArray(0), args.optJSONObject(1), callbackContext);
+        } else if (action.equals("stopRangingBeaconsInRegions")) {
+            stopRangingBeaconsInRegions(args.optJSONArray(0), callbackContext);
         } else if (action.equals("isRangingAvailable")) {
             isRangingAvailable(callbackContext);
         } else if (action.equals("getAuthorizationStatus")) {
@@ -251,6 +606,16 @@ public class LocationManager extends CordovaPlugin implements BeaconConsumer {
             enableBluetooth(callbackContext);
         } else if (action.equals("disableBluetooth")) {
             disableBluetooth(callbackContext);
+        } else if (action.equals("getEventQueueStats")) {
+            getEventQueueStats(callbackContext);
+        } else if (action.equals("setScanProfile")) {
+            setScanProfile(args.opt(0), callbackContext);
+        } else if (action.equals("getCommandStats")) {
+            getCommandStats(callbackContext);
+        } else if (action.equals("getMetrics")) {
+            getMetrics(callbackContext);
+        } else if (action.equals("dumpTraceBuffer")) {
+            dumpTraceBuffer(args.optBoolean(0, false), callbackContext);
         } else {
             return false;
         }
@@ -261,9 +626,83 @@ public class LocationManager extends CordovaPlugin implements BeaconConsumer {
 
     private void initLocationManager() {
         iBeaconManager.getBeaconParsers().add(new BeaconParser().setBeaconLayout("m:2-3=0215,i:4-19,i:20-21,i:22-23,p:24-24"));
+        beaconServiceBound = true;
         iBeaconManager.bind(this);
     }
 
+    /*
+     * Binds the beacon service the first time it's needed when LazyInitialization postponed it,
+     * asking for the location permission at the same time the eager initialization would.
+     */
+    private synchronized void bindBeaconService() {
+        if (beaconServiceBound || destroyed) {
+            return;
+        }
+        initLocationManager();
+
+        if (requestPermission) {
+            cordova.getActivity().runOnUiThread(new Runnable() {
+                public void run() {
+                    tryToRequestMarshmallowLocationPermission();
+                }
+            });
+        }
+    }
+
+    /*
+     * Regions can't be started or stopped before the service is connected. Until then the commands doing
+     * so are parked instead of blocking the command thread, and queued once onBeaconServiceConnect is called,
+     * in the order they came in. A start binds the service first if lazy initialization postponed it, a stop
+     * only waits if the service was bound, there is nothing to stop otherwise. If the service doesn't connect
+     * within BEACON_SERVICE_CONNECT_TIMEOUT_MILLIS the parked commands run anyway and fail.
+     */
+    private void executeWhenConnected(String action, CallbackContext callbackContext, boolean bind, Runnable command) {
+        if (!beaconServiceConnected) {
+            if (bind) {
+                bindBeaconService();
+            }
+            synchronized (parkedCommands) {
+                if (!beaconServiceConnected && beaconServiceBound && !destroyed) {
+                    if (parkedCommands.isEmpty()) {
+                        mainHandler.postDelayed(parkedCommandsTimeout, BEACON_SERVICE_CONNECT_TIMEOUT_MILLIS);
+                    }
+                    parkedCommands.add(new ParkedCommand(action, callbackContext, command));
+                    traceBuffer.record("parkCommand", action, parkedCommands.size());
+                    return;
+                }
+            }
+        }
+        commandExecutor.execute(action, command);
+    }
+
+    private void runParkedCommands() {
+        final List<ParkedCommand> commands;
+        synchronized (parkedCommands) {
+            mainHandler.removeCallbacks(parkedCommandsTimeout);
+            commands = new ArrayList<ParkedCommand>(parkedCommands);
+            parkedCommands.clear();
+        }
+        for (ParkedCommand parked : commands) {
+            try {
+                commandExecutor.execute(parked.action, parked.command);
+            } catch (RejectedExecutionException e) {
+                _rejectCommand(parked.callbackContext, parked.action, e);
+            }
+        }
+    }
+
+    private static final class ParkedCommand {
+        final String action;
+        final CallbackContext callbackContext;
+        final Runnable command;
+
+        ParkedCommand(String action, CallbackContext callbackContext, Runnable command) {
+            this.action = action;
+            this.callbackContext = callbackContext;
+            this.command = command;
+        }
+    }
+
     private BeaconTransmitter createOrGetBeaconTransmitter() {
         if (this.beaconTransmitter == null) {
             final BeaconParser beaconParser = new BeaconParser()
@@ -385,6 +824,51 @@ public class LocationManager extends CordovaPlugin implements BeaconConsumer {
         threadPoolExecutor.resume();
     }
 
+    /*
+     * The configured between scan period is the lower bound, the scheduler backs off from it while nothing happens.
+     */
+    private void initAdaptiveScanScheduler(int scanPeriod, int minBetweenScanPeriod, int maxBetweenScanPeriod,
+                                           int denseBeaconCount) {
+        adaptiveScanScheduler = new AdaptiveScanScheduler(scanPeriod, minBetweenScanPeriod, maxBetweenScanPeriod,
+                denseBeaconCount, new AdaptiveScanScheduler.Listener() {
+            @Override
+            public void onBetweenScanPeriodChanged(final long betweenScanPeriod) {
+                if (isDebugLogEnabled()) {
+                    debugLog("Adaptive between scan period: " + betweenScanPeriod);
+                }
+                traceBuffer.record("adaptiveBetweenScanPeriod", null, (int) betweenScanPeriod);
+                try {
+                    // On the command thread like setScanProfile, and not before the service is connected.
+                    executeWhenConnected("adaptiveBetweenScanPeriod", null, false, new Runnable() {
+                        @Override
+                        public void run() {
+                            iBeaconManager.setForegroundBetweenScanPeriod(betweenScanPeriod);
+                            updateScanPeriods();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    Log.w(TAG, "Not adapting the scan periods, the plugin is shut down");
+                }
+            }
+        });
+        adaptiveScanScheduler.start();
+    }
+
+    /*
+     * Applies changed scan periods to the running scans. Until the service is connected there is nothing
+     * to update, the library passes the periods set by then along when it starts ranging or monitoring.
+     */
+    private void updateScanPeriods() {
+        if (!beaconServiceConnected) {
+            return;
+        }
+        try {
+            iBeaconManager.updateScanPeriods();
+        } catch (RemoteException e) {
+            Log.w(TAG, "Failed to update scan periods: " + e.getMessage());
+        }
+    }
+
     private void initBluetoothListener() {
 
         //check access
@@ -398,10 +882,14 @@ public class LocationManager extends CordovaPlugin implements BeaconConsumer {
             iBeaconManager.checkAvailability();
         } catch (BleNotAvailableException e) {
             //if device does not support iBeacons this error is thrown
-            debugWarn("Cannot listen to Bluetooth service: " + e.getMessage());
+            if (isDebugLogEnabled()) {
+                debugWarn("Cannot listen to Bluetooth service: " + e.getMessage());
+            }
             return;
         } catch (Exception e) {
-            debugWarn("Unexpected exception checking for Bluetooth service: " + e.getMessage());
+            if (isDebugLogEnabled()) {
+                debugWarn("Unexpected exception checking for Bluetooth service: " + e.getMessage());
+            }
             return;
         }
 
@@ -421,7 +909,9 @@ public class LocationManager extends CordovaPlugin implements BeaconConsumer {
                     final int state = intent.getIntExtra(BluetoothAdapter.EXTRA_STATE, BluetoothAdapter.ERROR);
                     final int oldState = intent.getIntExtra(BluetoothAdapter.EXTRA_PREVIOUS_STATE, BluetoothAdapter.ERROR);
 
-                    debugLog("Bluetooth Service state changed from " + getStateDescription(oldState) + " to " + getStateDescription(state));
+                    if (isDebugLogEnabled()) {
+                        debugLog("Bluetooth Service state changed from " + getStateDescription(oldState) + " to " + getStateDescription(state));
+                    }
 
                     switch (state) {
                         case BluetoothAdapter.ERROR:
@@ -464,9 +954,7 @@ public class LocationManager extends CordovaPlugin implements BeaconConsumer {
     }
 
     private void initEventQueue() {
-        //queue is limited to one thread at a time
-        queue = new LinkedBlockingQueue<Runnable>();
-        threadPoolExecutor = new PausableThreadPoolExecutor(queue);
+        createEventQueue();
 
         //Add a timeout check
         new Handler().postDelayed(new Runnable() {
@@ -482,8 +970,39 @@ public class LocationManager extends CordovaPlugin implements BeaconConsumer {
             return;
 
         debugWarn("WARNING event queue should not be null.");
-        queue = new LinkedBlockingQueue<Runnable>();
-        threadPoolExecutor = new PausableThreadPoolExecutor(queue);
+        createEventQueue();
+    }
+
+    private void createEventQueue() {
+        //queue is limited to one thread at a time
+        queue = eventQueueCapacity > 0
+                ? new LinkedBlockingQueue<Runnable>(eventQueueCapacity)
+                : new LinkedBlockingQueue<Runnable>();
+        threadPoolExecutor = new PausableThreadPoolExecutor(queue, eventQueueOverflowPolicy, pipelineMetrics);
+    }
+
+    /*
+     * Sends a didUpdateMetrics event every interval once the DOM is ready. No events pile up
+     * in the queue before that.
+     */
+    private void initMetricsEvents(final int interval) {
+        metricsHandler = new Handler(Looper.getMainLooper());
+        metricsEventTask = new Runnable() {
+            @Override
+            public void run() {
+                if (beaconServiceNotifier != null && threadPoolExecutor != null && !threadPoolExecutor.isPaused()) {
+                    try {
+                        beaconServiceNotifier.didUpdateMetrics(mapOfMetrics());
+                    } catch (JSONException e) {
+                        if (isDebugLogEnabled()) {
+                            debugWarn("'didUpdateMetrics' exception: " + e.getMessage());
+                        }
+                    }
+                }
+                metricsHandler.postDelayed(this, interval);
+            }
+        };
+        metricsHandler.postDelayed(metricsEventTask, interval);
     }
 
     private void checkIfDomSignaldDelegateReady() {
@@ -504,83 +1023,244 @@ public class LocationManager extends CordovaPlugin implements BeaconConsumer {
         iBeaconManager.setMonitorNotifier(new MonitorNotifier() {
             @Override
             public void didEnterRegion(Region region) {
-                debugLog("didEnterRegion INSIDE for " + region.getUniqueId());
-                dispatchMonitorState("didEnterRegion", MonitorNotifier.INSIDE, region, callbackContext);
+                final long ingressNanos = System.nanoTime();
+                debugLog("didEnterRegion INSIDE for ", region.getUniqueId());
+                traceBuffer.record("didEnterRegion", region.getUniqueId(), MonitorNotifier.INSIDE);
+                if (adaptiveScanScheduler != null) {
+                    adaptiveScanScheduler.recordTransition();
+                }
+                dispatchMonitorState("didEnterRegion", MonitorNotifier.INSIDE, region, ingressNanos, callbackContext);
             }
 
             @Override
             public void didExitRegion(Region region) {
-                debugLog("didExitRegion OUTSIDE for " + region.getUniqueId());
-                dispatchMonitorState("didExitRegion", MonitorNotifier.OUTSIDE, region, callbackContext);
+                final long ingressNanos = System.nanoTime();
+                debugLog("didExitRegion OUTSIDE for ", region.getUniqueId());
+                traceBuffer.record("didExitRegion", region.getUniqueId(), MonitorNotifier.OUTSIDE);
+                if (adaptiveScanScheduler != null) {
+                    adaptiveScanScheduler.recordTransition();
+                }
+                dispatchMonitorState("didExitRegion", MonitorNotifier.OUTSIDE, region, ingressNanos, callbackContext);
             }
 
             @Override
             public void didDetermineStateForRegion(int state, Region region) {
-                debugLog("didDetermineStateForRegion '" + nameOfRegionState(state) + "' for region: " + region.getUniqueId());
-                dispatchMonitorState("didDetermineStateForRegion", state, region, callbackContext);
+                final long ingressNanos = System.nanoTime();
+                if (isDebugLogEnabled()) {
+                    debugLog("didDetermineStateForRegion '" + nameOfRegionState(state) + "' for region: " + region.getUniqueId());
+                }
+                traceBuffer.record("didDetermineStateForRegion", region.getUniqueId(), state);
+                dispatchMonitorState("didDetermineStateForRegion", state, region, ingressNanos, callbackContext);
             }
 
-            // Send state to JS callback until told to stop
-            private void dispatchMonitorState(final String eventType, final int state, final Region region, final CallbackContext callbackContext) {
+            // Send state to JS callback until told to stop, a debounced event keeps its ingress time
+            private void dispatchMonitorState(final String eventType, final int state, final Region region,
+                                              final long ingressNanos, final CallbackContext callbackContext) {
 
-                threadPoolExecutor.execute(new Runnable() {
+                final boolean transition = !eventType.equals("didDetermineStateForRegion");
+                monitoringDebouncer.offer(region.getUniqueId(), state, transition, new Runnable() {
                     public void run() {
-                        try {
-                            JSONObject data = new JSONObject();
-                            data.put("eventType", eventType);
-                            data.put("region", mapOfRegion(region));
+                        enqueueMonitorState(eventType, state, region, ingressNanos, callbackContext);
+                    }
+                });
+            }
 
-                            if (eventType.equals("didDetermineStateForRegion")) {
-                                String stateName = nameOfRegionState(state);
-                                data.put("state", stateName);
-                            }
-                            //send and keep reference to callback
-                            PluginResult result = new PluginResult(PluginResult.Status.OK, data);
-                            result.setKeepCallback(true);
-                            callbackContext.sendPluginResult(result);
+            private void enqueueMonitorState(final String eventType, final int state, final Region region,
+                                             final long ingressNanos, final CallbackContext callbackContext) {
 
-                        } catch (Exception e) {
-                            Log.e(TAG, "'monitoringDidFailForRegion' exception " + e.getCause());
-                            beaconServiceNotifier.monitoringDidFailForRegion(region, e);
+                final JSONObject data = new JSONObject();
+                try {
+                    data.put("eventType", eventType);
+                    data.put("region", mapOfRegion(region));
 
-                        }
+                    if (eventType.equals("didDetermineStateForRegion")) {
+                        String stateName = nameOfRegionState(state);
+                        data.put("state", stateName);
+                    }
+                } catch (Exception e) {
+                    Log.e(TAG, "'monitoringDidFailForRegion' exception " + e.getCause());
+                    traceBuffer.record("monitoringDidFailForRegion", region.getUniqueId(), state, e.getMessage());
+                    beaconServiceNotifier.monitoringDidFailForRegion(region, e);
+                    return;
+                }
+
+                // Logged before it is queued, so it survives the process dying before the DOM is ready. The
+                // log writes it on its own thread, this doesn't wait for the disk.
+                final MonitoringEventLog.Event loggedEvent = monitoringEventLog != null
+                        ? monitoringEventLog.append(data.toString().getBytes(UTF_8)) : null;
+
+                threadPoolExecutor.execute(new EventTask(eventType, ingressNanos) {
+                    public void run() {
+                        deliverMonitorEvent(data, loggedEvent, callbackContext);
                     }
                 });
             }
         });
 
+        replayMonitoringEventLog(callbackContext);
+    }
+
+    // Send state to JS callback until told to stop, then acknowledge it in the event log
+    private void deliverMonitorEvent(JSONObject data, MonitoringEventLog.Event loggedEvent,
+                                     CallbackContext callbackContext) {
+        //send and keep reference to callback
+        final long serializationStartedNanos = System.nanoTime();
+        PluginResult result = new PluginResult(PluginResult.Status.OK, data);
+        final String eventType = data.optString("eventType");
+        pipelineMetrics.recordSerialization(eventType, System.nanoTime() - serializationStartedNanos);
+        sendEvent(eventType, result, callbackContext);
+        acknowledgeMonitorEvent(loggedEvent);
+    }
+
+    // Only delivered events are acknowledged. Events dropped by the overflow policy stay in the log and are
+    // replayed after the next start, monitoring is at least once whatever the policy.
+    private void acknowledgeMonitorEvent(MonitoringEventLog.Event loggedEvent) {
+        if (monitoringEventLog != null && loggedEvent != null) {
+            monitoringEventLog.acknowledge(loggedEvent);
+        }
+    }
+
+    // Sends the event keeping the callback, timing the bridge and the whole way from the library callback
+    private void sendEvent(String eventType, PluginResult result, CallbackContext callbackContext) {
+        result.setKeepCallback(true);
+        final long startedNanos = System.nanoTime();
+        callbackContext.sendPluginResult(result);
+        final long sentNanos = System.nanoTime();
+        pipelineMetrics.recordSend(eventType, sentNanos - startedNanos);
+
+        final EventTask task = threadPoolExecutor.getRunningTask();
+        if (task != null) {
+            pipelineMetrics.recordEndToEnd(eventType, sentNanos - task.ingressNanos);
+        }
+    }
+
+    /*
+     * Queues the monitoring events the previous process logged but didn't deliver, marked as replayed.
+     * They are queued as soon as the log is open, which is normally ahead of the new events, and go out
+     * once the DOM is ready.
+     */
+    private void replayMonitoringEventLog(final CallbackContext callbackContext) {
+        if (monitoringEventLog == null) {
+            return;
+        }
+
+        // Runs on the thread of the log once it is open, never on the caller's.
+        monitoringEventLog.replay(new MonitoringEventLog.RecoveryListener() {
+            @Override
+            public void onRecovered(List<MonitoringEventLog.Event> events) {
+                for (final MonitoringEventLog.Event event : events) {
+                    try {
+                        final JSONObject data = new JSONObject(new String(event.payload, UTF_8));
+                        data.put("replayed", true);
+                        threadPoolExecutor.execute(new EventTask(data.optString("eventType")) {
+                            public void run() {
+                                deliverMonitorEvent(data, event, callbackContext);
+                            }
+                        });
+                    } catch (JSONException e) {
+                        Log.w(TAG, "Dropping unreadable monitoring event " + event.sequence + " of the event log: " + e.getMessage());
+                        acknowledgeMonitorEvent(event);
+                    }
+                }
+            }
+        });
     }
 
     private void createRangingCallbacks(final CallbackContext callbackContext) {
 
+        if (rangingFrameBatcher != null) {
+            rangingFrameBatcher.flush();
+            rangingFrameBatcher = null;
+        }
+
+        if (batchRangingEvents) {
+            rangingFrameBatcher = new RangingFrameBatcher(rangingBatchWindow, new RangingFrameBatcher.FrameListener() {
+                @Override
+                public void onFrame(final LinkedHashMap<String, RangingEventCoalescer.Snapshot> frame) {
+                    // The frame is as old as its first snapshot.
+                    final long ingressNanos = frame.values().iterator().next().ingressNanos;
+
+                    if (rangingEventCoalescer != null) {
+                        // Only the first frame schedules a dispatch, later ones are merged into it.
+                        if (rangingEventCoalescer.offerFrame(frame)) {
+                            threadPoolExecutor.execute(new RangingEventTask("didRangeBeaconsInRegions", ingressNanos) {
+                                public void run() {
+                                    LinkedHashMap<String, RangingEventCoalescer.Snapshot> latest = rangingEventCoalescer.takeFrame();
+                                    if (latest != null) {
+                                        dispatchRangingFrame(latest, callbackContext);
+                                    }
+                                }
+
+                                @Override
+                                public void discard() {
+                                    // Lets the next frame schedule a dispatch again.
+                                    rangingEventCoalescer.takeFrame();
+                                }
+                            });
+                        }
+                        return;
+                    }
+
+                    threadPoolExecutor.execute(new RangingEventTask("didRangeBeaconsInRegions", ingressNanos) {
+                        public void run() {
+                            dispatchRangingFrame(frame, callbackContext);
+                        }
+                    });
+                }
+            });
+        }
+
         iBeaconManager.setRangeNotifier(new RangeNotifier() {
             @Override
-            public void didRangeBeaconsInRegion(final Collection<Beacon> iBeacons, final Region region) {
+            public void didRangeBeaconsInRegion(final Collection<Beacon> rangedBeacons, final Region region) {
+                final long ingressNanos = System.nanoTime();
 
-                threadPoolExecutor.execute(new Runnable() {
-                    public void run() {
+                traceBuffer.record("didRangeBeaconsInRegion", region.getUniqueId(), rangedBeacons.size());
+                pipelineMetrics.recordRangingCallback(region.getUniqueId(), rangedBeacons);
+                if (adaptiveScanScheduler != null) {
+                    adaptiveScanScheduler.recordRangingCycle(rangedBeacons.size());
+                }
 
-                        try {
-                            JSONObject data = new JSONObject();
-                            JSONArray beaconData = new JSONArray();
-                            for (Beacon beacon : iBeacons) {
-                                beaconData.put(mapOfBeacon(beacon));
-                            }
-                            data.put("eventType", "didRangeBeaconsInRegion");
-                            data.put("region", mapOfRegion(region));
-                            data.put("beacons", beaconData);
+                // Smoothed and classified before the cycle is batched, coalesced or dropped, the filters and a
+                // classifier keeping state must see every sample, at the time it was ranged.
+                final Collection<Beacon> iBeacons = smoothRangedBeacons(rangedBeacons, region);
+                final Proximities proximities = Proximities.classify(proximityClassifier, region.getUniqueId(), iBeacons);
+                queueProximityChanges(iBeacons, region, proximities, ingressNanos, callbackContext);
+                final RangingEventCoalescer.Snapshot snapshot = snapshotOfRangingCycle(iBeacons, region, proximities,
+                        ingressNanos);
+                if (snapshot == null) {
+                    return; // nothing to send for this cycle
+                }
 
-                            debugLog("didRangeBeacons: " + data.toString());
+                if (rangingFrameBatcher != null) {
+                    rangingFrameBatcher.add(snapshot);
+                    return;
+                }
 
-                            //send and keep reference to callback
-                            PluginResult result = new PluginResult(PluginResult.Status.OK, data);
-                            result.setKeepCallback(true);
-                            callbackContext.sendPluginResult(result);
+                if (rangingEventCoalescer != null) {
+                    // Only the first snapshot of a region schedules a dispatch, later ones just replace its beacons.
+                    if (rangingEventCoalescer.offer(snapshot)) {
+                        threadPoolExecutor.execute(new RangingEventTask("didRangeBeaconsInRegion", ingressNanos) {
+                            public void run() {
+                                RangingEventCoalescer.Snapshot latest = rangingEventCoalescer.take(region);
+                                if (latest != null) {
+                                    dispatchRangedBeacons(latest, callbackContext);
+                                }
+                            }
 
-                        } catch (Exception e) {
-                            Log.e(TAG, "'rangingBeaconsDidFailForRegion' exception " + e.getCause());
-                            beaconServiceNotifier.rangingBeaconsDidFailForRegion(region, e);
-                        }
+                            @Override
+                            public void discard() {
+                                // Lets the next ranging cycle of the region schedule a dispatch again.
+                                rangingEventCoalescer.take(region);
+                            }
+                        });
+                    }
+                    return;
+                }
+
+                threadPoolExecutor.execute(new RangingEventTask("didRangeBeaconsInRegion", ingressNanos) {
+                    public void run() {
+                        dispatchRangedBeacons(snapshot, callbackContext);
                     }
                 });
             }
@@ -589,12 +1269,149 @@ public class LocationManager extends CordovaPlugin implements BeaconConsumer {
 
     }
 
+    private void dispatchRangedBeacons(RangingEventCoalescer.Snapshot snapshot, CallbackContext callbackContext) {
+        final Region region = snapshot.region;
+
+        try {
+            RangingResult rangingResult = selectRangingResult(snapshot);
+            if (rangingResult == null) {
+                return; // nothing changed since the last cycle sent to the DOM
+            }
+
+            final long serializationStartedNanos = System.nanoTime();
+            PluginResult result;
+            if (binaryRangingWireFormat) {
+                result = new PluginResult(PluginResult.Status.OK, BinaryRangingEncoder.encode(
+                        BinaryRangingEncoder.KIND_REGION,
+                        Collections.singletonList(rangingResult),
+                        Collections.singletonList(utf8OfRegion(region))));
+            } else {
+                JSONObject data = mapOfRangingResult(rangingResult);
+                data.put("eventType", "didRangeBeaconsInRegion");
+
+                debugLog("didRangeBeacons: ", data);
+                result = new PluginResult(PluginResult.Status.OK, data);
+            }
+            pipelineMetrics.recordSerialization("didRangeBeaconsInRegion", System.nanoTime() - serializationStartedNanos);
+
+            //send and keep reference to callback
+            sendEvent("didRangeBeaconsInRegion", result, callbackContext);
+
+        } catch (Exception e) {
+            Log.e(TAG, "'rangingBeaconsDidFailForRegion' exception " + e.getCause());
+            traceBuffer.record("rangingBeaconsDidFailForRegion", region.getUniqueId(), 0, e.getMessage());
+            beaconServiceNotifier.rangingBeaconsDidFailForRegion(region, e);
+        }
+    }
+
+    /*
+     * Compares the ranging cycle with the previous one of the region, if it was started with proximityEvents,
+     * and queues a didChangeProximity event with the beacons whose proximity class changed. Called from the
+     * library callback, so no cycle is skipped. The event is queued on its own rather than with the ranging
+     * event: it reports an edge no later cycle repeats, so it is neither coalesced nor dropped as ranging.
+     */
+    private void queueProximityChanges(Collection<Beacon> iBeacons, final Region region,
+                                       final Proximities proximities, long ingressNanos,
+                                       final CallbackContext callbackContext) {
+        final ProximityChangeTracker tracker = proximityChangeTrackers.get(region.getUniqueId());
+        if (tracker == null) {
+            return;
+        }
+
+        final List<ProximityChangeTracker.Change> changes = tracker.update(iBeacons, proximities);
+        if (changes.isEmpty()) {
+            return;
+        }
+
+        traceBuffer.record("didChangeProximity", region.getUniqueId(), changes.size());
+        threadPoolExecutor.execute(new EventTask("didChangeProximity", ingressNanos) {
+            public void run() {
+                dispatchProximityChanges(changes, region, proximities, callbackContext);
+            }
+        });
+    }
+
+    private void dispatchProximityChanges(List<ProximityChangeTracker.Change> changes, Region region,
+                                          Proximities proximities, CallbackContext callbackContext) {
+        try {
+            final long serializationStartedNanos = System.nanoTime();
+            JSONArray changeData = new JSONArray();
+            for (ProximityChangeTracker.Change change : changes) {
+                JSONObject beaconData = BeaconSerializer.mapOfBeacon(change.beacon, proximities);
+                beaconData.put("proximity", Proximity.nameOf(change.proximity));
+                beaconData.put("previousProximity", Proximity.nameOf(change.previousProximity));
+                changeData.put(beaconData);
+            }
+
+            JSONObject data = new JSONObject();
+            data.put("eventType", "didChangeProximity");
+            data.put("region", mapOfRegion(region));
+            data.put("changes", changeData);
+
+            debugLog("didChangeProximity: ", data);
+
+            PluginResult result = new PluginResult(PluginResult.Status.OK, data);
+            pipelineMetrics.recordSerialization("didChangeProximity", System.nanoTime() - serializationStartedNanos);
+            sendEvent("didChangeProximity", result, callbackContext);
+
+        } catch (JSONException e) {
+            Log.e(TAG, "'didChangeProximity' exception " + e.getCause());
+        }
+    }
+
+    private void dispatchRangingFrame(LinkedHashMap<String, RangingEventCoalescer.Snapshot> frame, CallbackContext callbackContext) {
+
+        List<RangingResult> rangingResults = new ArrayList<RangingResult>(frame.size());
+        for (RangingEventCoalescer.Snapshot snapshot : frame.values()) {
+            RangingResult rangingResult = selectRangingResult(snapshot);
+            if (rangingResult != null) {
+                rangingResults.add(rangingResult);
+            }
+        }
+
+        if (rangingResults.isEmpty()) {
+            return;
+        }
+
+        try {
+            final long serializationStartedNanos = System.nanoTime();
+            PluginResult result;
+            if (binaryRangingWireFormat) {
+                List<byte[]> regionJson = new ArrayList<byte[]>(rangingResults.size());
+                for (RangingResult rangingResult : rangingResults) {
+                    regionJson.add(utf8OfRegion(rangingResult.region));
+                }
+                result = new PluginResult(PluginResult.Status.OK, BinaryRangingEncoder.encode(
+                        BinaryRangingEncoder.KIND_FRAME, rangingResults, regionJson));
+            } else {
+                JSONObject regionData = new JSONObject();
+                for (RangingResult rangingResult : rangingResults) {
+                    regionData.put(rangingResult.region.getUniqueId(), mapOfRangingResult(rangingResult));
+                }
+
+                JSONObject data = new JSONObject();
+                data.put("eventType", "didRangeBeaconsInRegions");
+                data.put("regions", regionData);
+
+                debugLog("didRangeBeaconsInRegions: ", data);
+                result = new PluginResult(PluginResult.Status.OK, data);
+            }
+            pipelineMetrics.recordSerialization("didRangeBeaconsInRegions", System.nanoTime() - serializationStartedNanos);
+
+            //send and keep reference to callback
+            sendEvent("didRangeBeaconsInRegions", result, callbackContext);
+
+        } catch (Exception e) {
+            Log.e(TAG, "'didRangeBeaconsInRegions' exception " + e.getCause());
+        }
+    }
+
     private void createManagerCallbacks(final CallbackContext callbackContext) {
         beaconServiceNotifier = new IBeaconServiceNotifier() {
 
             @Override
             public void rangingBeaconsDidFailForRegion(final Region region, final Exception exception) {
-                threadPoolExecutor.execute(new Runnable() {
+                threadPoolExecutor.execute(new EventTask("rangingBeaconsDidFailForRegion") {
                     public void run() {
 
                         sendFailEvent("rangingBeaconsDidFailForRegion", region, exception, callbackContext);
@@ -604,7 +1421,7 @@ public class LocationManager extends CordovaPlugin implements BeaconConsumer {
 
             @Override
             public void monitoringDidFailForRegion(final Region region, final Exception exception) {
-                threadPoolExecutor.execute(new Runnable() {
+                threadPoolExecutor.execute(new EventTask("monitoringDidFailForRegionWithError") {
                     public void run() {
 
                         sendFailEvent("monitoringDidFailForRegionWithError", region, exception, callbackContext);
@@ -614,7 +1431,7 @@ public class LocationManager extends CordovaPlugin implements BeaconConsumer {
 
             @Override
             public void didStartMonitoringForRegion(final Region region) {
-                threadPoolExecutor.execute(new Runnable() {
+                threadPoolExecutor.execute(new EventTask("didStartMonitoringForRegion") {
                     public void run() {
 
                         try {
@@ -622,12 +1439,10 @@ public class LocationManager extends CordovaPlugin implements BeaconConsumer {
                             data.put("eventType", "didStartMonitoringForRegion");
                             data.put("region", mapOfRegion(region));
 
-                            debugLog("didStartMonitoringForRegion: " + data.toString());
+                            debugLog("didStartMonitoringForRegion: ", data);
 
                             //send and keep reference to callback
-                            PluginResult result = new PluginResult(PluginResult.Status.OK, data);
-                            result.setKeepCallback(true);
-                            callbackContext.sendPluginResult(result);
+                            sendEvent("didStartMonitoringForRegion", new PluginResult(PluginResult.Status.OK, data), callbackContext);
 
                         } catch (Exception e) {
                             Log.e(TAG, "'startMonitoringForRegion' exception " + e.getCause());
@@ -639,19 +1454,17 @@ public class LocationManager extends CordovaPlugin implements BeaconConsumer {
 
             @Override
             public void didChangeAuthorizationStatus(final String status) {
-                threadPoolExecutor.execute(new Runnable() {
+                threadPoolExecutor.execute(new EventTask("didChangeAuthorizationStatus") {
                     public void run() {
 
                         try {
                             JSONObject data = new JSONObject();
                             data.put("eventType", "didChangeAuthorizationStatus");
                             data.put("authorizationStatus", status);
-                            debugLog("didChangeAuthorizationStatus: " + data.toString());
+                            debugLog("didChangeAuthorizationStatus: ", data);
 
                             //send and keep reference to callback
-                            PluginResult result = new PluginResult(PluginResult.Status.OK, data);
-                            result.setKeepCallback(true);
-                            callbackContext.sendPluginResult(result);
+                            sendEvent("didChangeAuthorizationStatus", new PluginResult(PluginResult.Status.OK, data), callbackContext);
 
                         } catch (Exception e) {
                             callbackContext.error("didChangeAuthorizationStatus error: " + e.getMessage());
@@ -660,6 +1473,26 @@ public class LocationManager extends CordovaPlugin implements BeaconConsumer {
                 });
             }
 
+            @Override
+            public void didUpdateMetrics(final JSONObject metrics) {
+                threadPoolExecutor.execute(new EventTask("didUpdateMetrics") {
+                    public void run() {
+
+                        try {
+                            JSONObject data = new JSONObject();
+                            data.put("eventType", "didUpdateMetrics");
+                            data.put("metrics", metrics);
+                            sendEvent("didUpdateMetrics", new PluginResult(PluginResult.Status.OK, data), callbackContext);
+
+                        } catch (JSONException e) {
+                            if (isDebugLogEnabled()) {
+                                debugWarn("'didUpdateMetrics' exception: " + e.getMessage());
+                            }
+                        }
+                    }
+                });
+            }
+
             private void sendFailEvent(String eventType, Region region, Exception exception, final CallbackContext callbackContext) {
                 try {
                     JSONObject data = new JSONObject();
@@ -667,9 +1500,7 @@ public class LocationManager extends CordovaPlugin implements BeaconConsumer {
                     data.put("region", mapOfRegion(region));
                     data.put("error", exception.getMessage());
 
-                    PluginResult result = new PluginResult(PluginResult.Status.OK, data);
-                    result.setKeepCallback(true);
-                    callbackContext.sendPluginResult(result);
+                    sendEvent(eventType, new PluginResult(PluginResult.Status.OK, data), callbackContext);
                 } catch (Exception e) {
                     //still failing, so kill all further event dispatch
                     Log.e(TAG, eventType + " error " + e.getMessage());
@@ -697,19 +1528,178 @@ public class LocationManager extends CordovaPlugin implements BeaconConsumer {
      */
     private void onDomDelegateReady(CallbackContext callbackContext) {
 
-        _handleCallSafely(callbackContext, new ILocationManagerCommand() {
+        _handleCallSafely(callbackContext, "onDomDelegateReady", new ILocationManagerCommand() {
 
             @Override
             public PluginResult run() {
+                traceBuffer.record("onDomDelegateReady", null, queue != null ? queue.size() : 0);
                 resumeEventPropagationToDom();
                 return new PluginResult(PluginResult.Status.OK);
             }
         });
     }
 
+    private void getEventQueueStats(CallbackContext callbackContext) {
+
+        _handleCallSafely(callbackContext, "getEventQueueStats", new ILocationManagerCommand() {
+
+            @Override
+            public PluginResult run() {
+                try {
+                    checkEventQueue();
+
+                    JSONObject stats = new JSONObject();
+                    stats.put("capacity", eventQueueCapacity);
+                    stats.put("overflowPolicy", eventQueueOverflowPolicy.getConfigName());
+                    stats.put("paused", threadPoolExecutor.isPaused());
+                    stats.put("depth", queue.size());
+                    stats.put("enqueued", threadPoolExecutor.getEnqueuedCount());
+                    stats.put("dropped", threadPoolExecutor.getDroppedCount());
+                    stats.put("replayed", threadPoolExecutor.getReplayedCount());
+                    stats.put("suppressedTransitions", monitoringDebouncer.getSuppressedCount());
+                    return new PluginResult(PluginResult.Status.OK, stats);
+
+                } catch (JSONException e) {
+                    if (isDebugLogEnabled()) {
+                        debugWarn("'getEventQueueStats' exception: " + e.getMessage());
+                    }
+                    return new PluginResult(PluginResult.Status.ERROR, e.getMessage());
+                }
+            }
+        });
+    }
+
+    private void setScanProfile(final Object profile, CallbackContext callbackContext) {
+
+        _handleCallWhenConnected(callbackContext, "setScanProfile", false, new ILocationManagerCommand() {
+
+            @Override
+            public PluginResult run() {
+                try {
+                    final ScanProfile newProfile = ScanProfile.fromJson(profile, scanProfile);
+
+                    iBeaconManager.setForegroundScanPeriod(newProfile.foregroundScanPeriod);
+                    iBeaconManager.setForegroundBetweenScanPeriod(newProfile.foregroundBetweenScanPeriod);
+                    iBeaconManager.setBackgroundScanPeriod(newProfile.backgroundScanPeriod);
+                    iBeaconManager.setBackgroundBetweenScanPeriod(newProfile.backgroundBetweenScanPeriod);
+                    if (adaptiveScanScheduler != null) {
+                        // The between scan period of the profile becomes the lower bound of the adaptation.
+                        adaptiveScanScheduler.setPeriods(newProfile.foregroundScanPeriod,
+                                newProfile.foregroundBetweenScanPeriod,
+                                Math.max(newProfile.foregroundBetweenScanPeriod,
+                                        adaptiveScanScheduler.getMaxBetweenScanPeriod()));
+                    }
+                    updateScanPeriods();
+                    scanProfile = newProfile;
+
+                    traceBuffer.record("setScanProfile", null, (int) newProfile.foregroundBetweenScanPeriod, newProfile.name);
+                    return new PluginResult(PluginResult.Status.OK, newProfile.toJson());
+
+                } catch (IllegalArgumentException e) {
+                    if (isDebugLogEnabled()) {
+                        debugWarn("'setScanProfile' exception: " + e.getMessage());
+                    }
+                    return new PluginResult(PluginResult.Status.ERROR, e.getMessage());
+                } catch (JSONException e) {
+                    if (isDebugLogEnabled()) {
+                        debugWarn("'setScanProfile' exception: " + e.getMessage());
+                    }
+                    return new PluginResult(PluginResult.Status.ERROR, e.getMessage());
+                }
+            }
+        });
+    }
+
+    private void getCommandStats(CallbackContext callbackContext) {
+
+        _handleCallSafely(callbackContext, "getCommandStats", new ILocationManagerCommand() {
+
+            @Override
+            public PluginResult run() {
+                try {
+                    JSONObject stats = new JSONObject();
+                    stats.put("depth", commandExecutor.getQueueDepth());
+                    stats.put("actions", commandExecutor.toJson());
+                    return new PluginResult(PluginResult.Status.OK, stats);
+
+                } catch (JSONException e) {
+                    if (isDebugLogEnabled()) {
+                        debugWarn("'getCommandStats' exception: " + e.getMessage());
+                    }
+                    return new PluginResult(PluginResult.Status.ERROR, e.getMessage());
+                }
+            }
+        });
+    }
+
+    private void getMetrics(CallbackContext callbackContext) {
+
+        _handleCallSafely(callbackContext, "getMetrics", new ILocationManagerCommand() {
+
+            @Override
+            public PluginResult run() {
+                try {
+                    checkEventQueue();
+                    return new PluginResult(PluginResult.Status.OK, mapOfMetrics());
+
+                } catch (JSONException e) {
+                    if (isDebugLogEnabled()) {
+                        debugWarn("'getMetrics' exception: " + e.getMessage());
+                    }
+                    return new PluginResult(PluginResult.Status.ERROR, e.getMessage());
+                }
+            }
+        });
+    }
+
+    /*
+     * The event queue, the event pipeline and the command executor counters in one object.
+     */
+    private JSONObject mapOfMetrics() throws JSONException {
+        JSONObject eventQueue = new JSONObject();
+        eventQueue.put("depth", queue.size());
+        eventQueue.put("paused", threadPoolExecutor.isPaused());
+        eventQueue.put("enqueued", threadPoolExecutor.getEnqueuedCount());
+        eventQueue.put("dropped", threadPoolExecutor.getDroppedCount());
+        eventQueue.put("replayed", threadPoolExecutor.getReplayedCount());
+        eventQueue.put("suppressedTransitions", monitoringDebouncer.getSuppressedCount());
+
+        JSONObject commands = new JSONObject();
+        commands.put("depth", commandExecutor.getQueueDepth());
+        commands.put("actions", commandExecutor.toJson());
+
+        JSONObject metrics = pipelineMetrics.toJson();
+        metrics.put("eventQueue", eventQueue);
+        metrics.put("commands", commands);
+        return metrics;
+    }
+
+    private void dumpTraceBuffer(final boolean clear, CallbackContext callbackContext) {
+
+        _handleCallSafely(callbackContext, "dumpTraceBuffer", new ILocationManagerCommand() {
+
+            @Override
+            public PluginResult run() {
+                try {
+                    JSONObject dump = traceBuffer.toJson();
+                    if (clear) {
+                        traceBuffer.clear();
+                    }
+                    return new PluginResult(PluginResult.Status.OK, dump);
+
+                } catch (JSONException e) {
+                    if (isDebugLogEnabled()) {
+                        debugWarn("'dumpTraceBuffer' exception: " + e.getMessage());
+                    }
+                    return new PluginResult(PluginResult.Status.ERROR, e.getMessage());
+                }
+            }
+        });
+    }
+
     private void isBluetoothEnabled(CallbackContext callbackContext) {
 
-        _handleCallSafely(callbackContext, new ILocationManagerCommand() {
+        _handleCallSafely(callbackContext, "isBluetoothEnabled", new ILocationManagerCommand() {
 
             @Override
             public PluginResult run() {
@@ -719,7 +1709,9 @@ public class LocationManager extends CordovaPlugin implements BeaconConsumer {
                     return new PluginResult(PluginResult.Status.OK, available);
 
                 } catch (Exception e) {
-                    debugWarn("'isBluetoothEnabled' exception " + e.getMessage());
+                    if (isDebugLogEnabled()) {
+                        debugWarn("'isBluetoothEnabled' exception " + e.getMessage());
+                    }
                     return new PluginResult(PluginResult.Status.ERROR, e.getMessage());
                 }
             }
@@ -729,7 +1721,7 @@ public class LocationManager extends CordovaPlugin implements BeaconConsumer {
 
     private void enableBluetooth(CallbackContext callbackContext) {
 
-        _handleCallSafely(callbackContext, new ILocationManagerCommand() {
+        _handleCallSafely(callbackContext, "enableBluetooth", new ILocationManagerCommand() {
 
             @Override
             public PluginResult run() {
@@ -748,7 +1740,7 @@ public class LocationManager extends CordovaPlugin implements BeaconConsumer {
 
     private void disableBluetooth(CallbackContext callbackContext) {
 
-        _handleCallSafely(callbackContext, new ILocationManagerCommand() {
+        _handleCallSafely(callbackContext, "disableBluetooth", new ILocationManagerCommand() {
 
             @Override
             public PluginResult run() {
@@ -767,7 +1759,7 @@ public class LocationManager extends CordovaPlugin implements BeaconConsumer {
 
     private void disableDebugNotifications(CallbackContext callbackContext) {
 
-        _handleCallSafely(callbackContext, new ILocationManagerCommand() {
+        _handleCallSafely(callbackContext, "disableDebugNotifications", new ILocationManagerCommand() {
 
             @Override
             public PluginResult run() {
@@ -780,7 +1772,7 @@ public class LocationManager extends CordovaPlugin implements BeaconConsumer {
     }
 
     private void enableDebugNotifications(CallbackContext callbackContext) {
-        _handleCallSafely(callbackContext, new ILocationManagerCommand() {
+        _handleCallSafely(callbackContext, "enableDebugNotifications", new ILocationManagerCommand() {
 
             @Override
             public PluginResult run() {
@@ -795,7 +1787,7 @@ public class LocationManager extends CordovaPlugin implements BeaconConsumer {
 
     private void disableDebugLogs(CallbackContext callbackContext) {
 
-        _handleCallSafely(callbackContext, new ILocationManagerCommand() {
+        _handleCallSafely(callbackContext, "disableDebugLogs", new ILocationManagerCommand() {
 
             @Override
             public PluginResult run() {
@@ -808,7 +1800,7 @@ public class LocationManager extends CordovaPlugin implements BeaconConsumer {
     }
 
     private void enableDebugLogs(CallbackContext callbackContext) {
-        _handleCallSafely(callbackContext, new ILocationManagerCommand() {
+        _handleCallSafely(callbackContext, "enableDebugLogs", new ILocationManagerCommand() {
 
             @Override
             public PluginResult run() {
@@ -821,13 +1813,15 @@ public class LocationManager extends CordovaPlugin implements BeaconConsumer {
     }
 
     private void appendToDeviceLog(final String message, CallbackContext callbackContext) {
-        _handleCallSafely(callbackContext, new ILocationManagerCommand() {
+        _handleCallSafely(callbackContext, "appendToDeviceLog", new ILocationManagerCommand() {
 
             @Override
             public PluginResult run() {
 
                 if (message != null && !message.isEmpty()) {
-                    debugLog("[DOM] " + message);
+                    if (isDebugLogEnabled()) {
+                        debugLog("[DOM] " + message);
+                    }
                     return new PluginResult(PluginResult.Status.OK, message);
                 } else {
                     return new PluginResult(PluginResult.Status.ERROR, "Log message not provided");
@@ -836,9 +1830,9 @@ public class LocationManager extends CordovaPlugin implements BeaconConsumer {
         });
     }
 
-    private void startMonitoringForRegion(final JSONObject arguments, final CallbackContext callbackContext) {
+    private void startMonitoringForRegion(final JSONObject arguments, final JSONObject options, final CallbackContext callbackContext) {
 
-        _handleCallSafely(callbackContext, new ILocationManagerCommand() {
+        _handleCallWhenConnected(callbackContext, "startMonitoringForRegion", true, new ILocationManagerCommand() {
 
             @Override
             public PluginResult run() {
@@ -846,7 +1840,7 @@ public class LocationManager extends CordovaPlugin implements BeaconConsumer {
                 Region region = null;
                 try {
                     region = parseRegion(arguments);
-                    iBeaconManager.startMonitoringBeaconsInRegion(region);
+                    startMonitoringRegion(region, options);
 
                     PluginResult result = new PluginResult(PluginResult.Status.OK);
                     result.setKeepCallback(true);
@@ -870,14 +1864,14 @@ public class LocationManager extends CordovaPlugin implements BeaconConsumer {
 
     private void stopMonitoringForRegion(final JSONObject arguments, final CallbackContext callbackContext) {
 
-        _handleCallSafely(callbackContext, new ILocationManagerCommand() {
+        _handleCallWhenConnected(callbackContext, "stopMonitoringForRegion", false, new ILocationManagerCommand() {
 
             @Override
             public PluginResult run() {
 
                 try {
-                    Region region = parseRegion(arguments);
-                    iBeaconManager.stopMonitoringBeaconsInRegion(region);
+                    Region region = resolveRegion(arguments);
+                    stopMonitoringRegion(region);
 
                     PluginResult result = new PluginResult(PluginResult.Status.OK);
                     result.setKeepCallback(true);
@@ -896,16 +1890,16 @@ public class LocationManager extends CordovaPlugin implements BeaconConsumer {
 
     }
 
-    private void startRangingBeaconsInRegion(final JSONObject arguments, final CallbackContext callbackContext) {
+    private void startRangingBeaconsInRegion(final JSONObject arguments, final JSONObject options, final CallbackContext callbackContext) {
 
-        _handleCallSafely(callbackContext, new ILocationManagerCommand() {
+        _handleCallWhenConnected(callbackContext, "startRangingBeaconsInRegion", true, new ILocationManagerCommand() {
 
             @Override
             public PluginResult run() {
 
                 try {
                     Region region = parseRegion(arguments);
-                    iBeaconManager.startRangingBeaconsInRegion(region);
+                    startRangingRegion(region, options);
 
                     PluginResult result = new PluginResult(PluginResult.Status.OK);
                     result.setKeepCallback(true);
@@ -923,14 +1917,14 @@ public class LocationManager extends CordovaPlugin implements BeaconConsumer {
     }
 
     private void stopRangingBeaconsInRegion(final JSONObject arguments, CallbackContext callbackContext) {
-        _handleCallSafely(callbackContext, new ILocationManagerCommand() {
+        _handleCallWhenConnected(callbackContext, "stopRangingBeaconsInRegion", false, new ILocationManagerCommand() {
 
             @Override
             public PluginResult run() {
 
                 try {
-                    Region region = parseRegion(arguments);
-                    iBeaconManager.stopRangingBeaconsInRegion(region);
+                    Region region = resolveRegion(arguments);
+                    stopRangingRegion(region);
 
                     PluginResult result = new PluginResult(PluginResult.Status.OK);
                     result.setKeepCallback(true);
@@ -948,9 +1942,266 @@ public class LocationManager extends CordovaPlugin implements BeaconConsumer {
 
     }
 
+    private void startMonitoringForRegions(final JSONArray regions, final JSONObject options, final CallbackContext callbackContext) {
+
+        _handleCallWhenConnected(callbackContext, "startMonitoringForRegions", true, new ILocationManagerCommand() {
+
+            @Override
+            public PluginResult run() {
+                return applyToRegions("startMonitoringForRegions", regions, false, new RegionCommand() {
+                    @Override
+                    public void run(Region region) throws Exception {
+                        try {
+                            startMonitoringRegion(region, options);
+                        } catch (Exception e) {
+                            beaconServiceNotifier.monitoringDidFailForRegion(region, e);
+                            throw e;
+                        }
+                        beaconServiceNotifier.didStartMonitoringForRegion(region);
+                    }
+                });
+            }
+        });
+    }
+
+    private void stopMonitoringForRegions(final JSONArray regions, final CallbackContext callbackContext) {
+
+        _handleCallWhenConnected(callbackContext, "stopMonitoringForRegions", false, new ILocationManagerCommand() {
+
+            @Override
+            public PluginResult run() {
+                return applyToRegions("stopMonitoringForRegions", regions, true, new RegionCommand() {
+                    @Override
+                    public void run(Region region) throws Exception {
+                        stopMonitoringRegion(region);
+                    }
+                });
+            }
+        });
+    }
+
+    private void startRangingBeaconsInRegions(final JSONArray regions, final JSONObject options, final CallbackContext callbackContext) {
+
+        _handleCallWhenConnected(callbackContext, "startRangingBeaconsInRegions", true, new ILocationManagerCommand() {
+
+            @Override
+            public PluginResult run() {
+                return applyToRegions("startRangingBeaconsInRegions", regions, false, new RegionCommand() {
+                    @Override
+                    public void run(Region region) throws Exception {
+                        startRangingRegion(region, options);
+                    }
+                });
+            }
+        });
+    }
+
+    private void stopRangingBeaconsInRegions(final JSONArray regions, final CallbackContext callbackContext) {
+
+        _handleCallWhenConnected(callbackContext, "stopRangingBeaconsInRegions", false, new ILocationManagerCommand() {
+
+            @Override
+            public PluginResult run() {
+                return applyToRegions("stopRangingBeaconsInRegions", regions, true, new RegionCommand() {
+                    @Override
+                    public void run(Region region) throws Exception {
+                        stopRangingRegion(region);
+                    }
+                });
+            }
+        });
+    }
+
+    private interface RegionCommand {
+        void run(Region region) throws Exception;
+    }
+
+    /*
+     * Runs the command for every region of the array in one pass. A region failing to parse or to start/stop
+     * doesn't stop the others, the result lists the number of regions processed and the failures by index.
+     * Registered regions are looked up instead of being parsed again if resolveRegistered is set.
+     */
+    private PluginResult applyToRegions(String action, JSONArray regions, boolean resolveRegistered, RegionCommand command) {
+        if (regions == null) {
+            return new PluginResult(PluginResult.Status.ERROR, "Array of regions not provided");
+        }
+
+        try {
+            int succeeded = 0;
+            JSONArray failures = new JSONArray();
+            for (int i = 0; i < regions.length(); i++) {
+                final JSONObject arguments = regions.optJSONObject(i);
+                try {
+                    if (arguments == null) {
+                        throw new InvalidKeyException("Region at index " + i + " is not an object.");
+                    }
+                    command.run(resolveRegistered ? resolveRegion(arguments) : parseRegion(arguments));
+                    succeeded++;
+                } catch (Exception e) {
+                    Log.e(TAG, "'" + action + "' exception for region at index " + i + ": " + e.getMessage());
+                    JSONObject failure = new JSONObject();
+                    failure.put("index", i);
+                    if (arguments != null && arguments.has("identifier")) {
+                        failure.put("identifier", arguments.optString("identifier"));
+                    }
+                    failure.put("error", e.getMessage());
+                    failures.put(failure);
+                }
+            }
+
+            JSONObject data = new JSONObject();
+            data.put("succeeded", succeeded);
+            data.put("failed", failures);
+            return new PluginResult(PluginResult.Status.OK, data);
+
+        } catch (JSONException e) {
+            Log.e(TAG, "'" + action + "' exception " + e.getCause());
+            return new PluginResult(PluginResult.Status.ERROR, e.getMessage());
+        }
+    }
+
+    private void startMonitoringRegion(Region region, JSONObject options) throws RemoteException, JSONException {
+        regionRegistry.checkRegistrable(region, RegionRegistry.MONITORED);
+        iBeaconManager.startMonitoringBeaconsInRegion(region);
+        // Only once started, a failed start must not reset the debouncing of a region monitored already.
+        monitoringDebouncer.configure(region.getUniqueId(), options);
+        final JSONObject json = BeaconSerializer.mapOfBeaconRegion(region);
+        regionRegistry.register(region, RegionRegistry.MONITORED, json);
+        if (regionStore != null) {
+            regionStore.put(region.getUniqueId(), RegionRegistry.MONITORED, json, options);
+        }
+        traceBuffer.record("startMonitoringForRegion", region.getUniqueId(), 0);
+    }
+
+    private void stopMonitoringRegion(Region region) throws RemoteException {
+        if (beaconServiceBound) { // nothing was started otherwise
+            iBeaconManager.stopMonitoringBeaconsInRegion(region);
+        }
+        monitoringDebouncer.remove(region.getUniqueId());
+        regionRegistry.unregister(region, RegionRegistry.MONITORED);
+        if (regionStore != null) {
+            regionStore.remove(region.getUniqueId(), RegionRegistry.MONITORED);
+        }
+        traceBuffer.record("stopMonitoringForRegion", region.getUniqueId(), 0);
+    }
+
+    private void startRangingRegion(Region region, JSONObject options) throws RemoteException, JSONException {
+        regionRegistry.checkRegistrable(region, RegionRegistry.RANGED);
+        final RangingOptions rangingOptions = RangingOptions.fromJson(options);
+        iBeaconManager.startRangingBeaconsInRegion(region);
+        // Only once started, a failed start must not replace the options of a region ranged already.
+        installRangingOptions(region.getUniqueId(), rangingOptions);
+        final JSONObject json = BeaconSerializer.mapOfBeaconRegion(region);
+        regionRegistry.register(region, RegionRegistry.RANGED, json);
+        if (regionStore != null) {
+            regionStore.put(region.getUniqueId(), RegionRegistry.RANGED, json, options);
+        }
+        traceBuffer.record("startRangingBeaconsInRegion", region.getUniqueId(), 0);
+    }
+
+    private void stopRangingRegion(Region region) throws RemoteException {
+        if (beaconServiceBound) { // nothing was started otherwise
+            iBeaconManager.stopRangingBeaconsInRegion(region);
+        }
+        rangingDeltaTrackers.remove(region.getUniqueId());
+        rangingFilters.remove(region.getUniqueId());
+        nearestBeaconTrackers.remove(region.getUniqueId());
+        regionRssiSmoothers.remove(region.getUniqueId());
+        proximityChangeTrackers.remove(region.getUniqueId());
+        silentRangedRegions.remove(region.getUniqueId());
+        regionRegistry.unregister(region, RegionRegistry.RANGED);
+        if (regionStore != null) {
+            regionStore.remove(region.getUniqueId(), RegionRegistry.RANGED);
+        }
+        traceBuffer.record("stopRangingBeaconsInRegion", region.getUniqueId(), 0);
+    }
+
+    /*
+     * Installs the per region ranging behaviour of a region, replacing what it was ranged with before.
+     * Restarting the ranging of a region resets it.
+     */
+    private void installRangingOptions(String regionId, RangingOptions options) {
+        if (options.deltaTracker != null) {
+            rangingDeltaTrackers.put(regionId, options.deltaTracker);
+        } else {
+            rangingDeltaTrackers.remove(regionId);
+        }
+
+        if (options.filter != null) {
+            rangingFilters.put(regionId, options.filter);
+        } else {
+            rangingFilters.remove(regionId);
+        }
+
+        if (options.rssiSmoother != null) {
+            regionRssiSmoothers.put(regionId, options.rssiSmoother);
+        } else {
+            regionRssiSmoothers.remove(regionId);
+        }
+
+        if (options.proximityChangeTracker != null) {
+            proximityChangeTrackers.put(regionId, options.proximityChangeTracker);
+        } else {
+            proximityChangeTrackers.remove(regionId);
+        }
+
+        if (options.silent) {
+            silentRangedRegions.add(regionId);
+        } else {
+            silentRangedRegions.remove(regionId);
+        }
+
+        if (options.nearestTracker != null) {
+            nearestBeaconTrackers.put(regionId, options.nearestTracker);
+        } else {
+            nearestBeaconTrackers.remove(regionId);
+        }
+    }
+
+    /*
+     * The optional per region ranging behaviour passed as the second argument of startRangingBeaconsInRegion.
+     * It is all parsed before the ranging is started, invalid options fail the start without touching the
+     * region.
+     */
+    private static final class RangingOptions {
+        final RangingDeltaTracker deltaTracker;
+        final RangingFilter filter;
+        final RegionRssiSmoother rssiSmoother;
+        final ProximityChangeTracker proximityChangeTracker;
+        final boolean silent;
+        final NearestBeaconTracker nearestTracker;
+
+        private RangingOptions(JSONObject options) throws JSONException {
+            final JSONObject filterOptions = options != null ? options.optJSONObject("filter") : null;
+            filter = filterOptions != null ? RangingFilter.fromJson(filterOptions) : null;
+            final JSONObject rssiFilterOptions = options != null ? options.optJSONObject("rssiFilter") : null;
+            rssiSmoother = rssiFilterOptions != null ? RegionRssiSmoother.fromJson(rssiFilterOptions) : null;
+
+            JSONObject deltaOptions = options != null ? options.optJSONObject("delta") : null;
+            if (deltaOptions == null && options != null && options.optBoolean("delta", false)) {
+                deltaOptions = new JSONObject();
+            }
+            deltaTracker = deltaOptions != null ? RangingDeltaTracker.fromJson(deltaOptions) : null;
+
+            proximityChangeTracker = options != null && options.optBoolean("proximityEvents", false)
+                    ? new ProximityChangeTracker() : null;
+            silent = options != null && !options.optBoolean("rangingEvents", true);
+
+            JSONObject nearestOptions = options != null ? options.optJSONObject("nearest") : null;
+            if (nearestOptions == null && options != null && options.optInt("nearest", 0) > 0) {
+                nearestOptions = new JSONObject();
+                nearestOptions.put("count", options.optInt("nearest"));
+            }
+            nearestTracker = nearestOptions != null ? NearestBeaconTracker.fromJson(nearestOptions) : null;
+        }
+
+        static RangingOptions fromJson(JSONObject options) throws JSONException {
+            return new RangingOptions(options);
+        }
+    }
 
     private void getAuthorizationStatus(CallbackContext callbackContext) {
-        _handleCallSafely(callbackContext, new ILocationManagerCommand() {
+        _handleCallSafely(callbackContext, "getAuthorizationStatus", new ILocationManagerCommand() {
 
             @Override
             public PluginResult run() {
@@ -971,10 +2222,14 @@ public class LocationManager extends CordovaPlugin implements BeaconConsumer {
 
                 } catch (BleNotAvailableException e) {
                     //if device does not support iBeacons and error is thrown
-                    debugLog("'getAuthorizationStatus' Device not supported: " + e.getMessage());
+                    if (isDebugLogEnabled()) {
+                        debugLog("'getAuthorizationStatus' Device not supported: " + e.getMessage());
+                    }
                     return new PluginResult(PluginResult.Status.ERROR, e.getMessage());
                 } catch (Exception e) {
-                    debugWarn("'getAuthorizationStatus' exception " + e.getMessage());
+                    if (isDebugLogEnabled()) {
+                        debugWarn("'getAuthorizationStatus' exception " + e.getMessage());
+                    }
                     return new PluginResult(PluginResult.Status.ERROR, e.getMessage());
                 }
 
@@ -983,7 +2238,7 @@ public class LocationManager extends CordovaPlugin implements BeaconConsumer {
     }
 
     private void requestWhenInUseAuthorization(CallbackContext callbackContext) {
-        _handleCallSafely(callbackContext, new ILocationManagerCommand() {
+        _handleCallSafely(callbackContext, "requestWhenInUseAuthorization", new ILocationManagerCommand() {
 
             @Override
             public PluginResult run() {
@@ -993,7 +2248,7 @@ public class LocationManager extends CordovaPlugin implements BeaconConsumer {
     }
 
     private void requestAlwaysAuthorization(CallbackContext callbackContext) {
-        _handleCallSafely(callbackContext, new ILocationManagerCommand() {
+        _handleCallSafely(callbackContext, "requestAlwaysAuthorization", new ILocationManagerCommand() {
 
             @Override
             public PluginResult run() {
@@ -1005,20 +2260,19 @@ public class LocationManager extends CordovaPlugin implements BeaconConsumer {
 
     private void getMonitoredRegions(CallbackContext callbackContext) {
 
-        _handleCallSafely(callbackContext, new ILocationManagerCommand() {
+        _handleCallSafely(callbackContext, "getMonitoredRegions", new ILocationManagerCommand() {
 
             @Override
             public PluginResult run() {
                 try {
-                    Collection<Region> regions = iBeaconManager.getMonitoredRegions();
-                    JSONArray regionArray = new JSONArray();
-                    for (Region region : regions) {
-                        regionArray.put(mapOfRegion(region));
-                    }
+                    JSONArray regionArray = mapOfRegisteredRegions(
+                            RegionRegistry.MONITORED, iBeaconManager.getMonitoredRegions());
 
                     return new PluginResult(PluginResult.Status.OK, regionArray);
                 } catch (JSONException e) {
-                    debugWarn("'getMonitoredRegions' exception: " + e.getMessage());
+                    if (isDebugLogEnabled()) {
+                        debugWarn("'getMonitoredRegions' exception: " + e.getMessage());
+                    }
                     return new PluginResult(PluginResult.Status.ERROR, e.getMessage());
                 }
             }
@@ -1028,20 +2282,19 @@ public class LocationManager extends CordovaPlugin implements BeaconConsumer {
 
     private void getRangedRegions(CallbackContext callbackContext) {
 
-        _handleCallSafely(callbackContext, new ILocationManagerCommand() {
+        _handleCallSafely(callbackContext, "getRangedRegions", new ILocationManagerCommand() {
 
             @Override
             public PluginResult run() {
                 try {
-                    Collection<Region> regions = iBeaconManager.getRangedRegions();
-                    JSONArray regionArray = new JSONArray();
-                    for (Region region : regions) {
-                        regionArray.put(mapOfRegion(region));
-                    }
+                    JSONArray regionArray = mapOfRegisteredRegions(
+                            RegionRegistry.RANGED, iBeaconManager.getRangedRegions());
 
                     return new PluginResult(PluginResult.Status.OK, regionArray);
                 } catch (JSONException e) {
-                    debugWarn("'getRangedRegions' exception: " + e.getMessage());
+                    if (isDebugLogEnabled()) {
+                        debugWarn("'getRangedRegions' exception: " + e.getMessage());
+                    }
                     return new PluginResult(PluginResult.Status.ERROR, e.getMessage());
                 }
             }
@@ -1052,7 +2305,7 @@ public class LocationManager extends CordovaPlugin implements BeaconConsumer {
     //This might not even be needed for Android as it should happen no matter what
     private void requestStateForRegion(final JSONObject arguments, CallbackContext callbackContext) {
 
-        _handleCallSafely(callbackContext, new ILocationManagerCommand() {
+        _handleCallSafely(callbackContext, "requestStateForRegion", new ILocationManagerCommand() {
             @Override
             public PluginResult run() {
 
@@ -1067,7 +2320,7 @@ public class LocationManager extends CordovaPlugin implements BeaconConsumer {
 
     private void isRangingAvailable(CallbackContext callbackContext) {
 
-        _handleCallSafely(callbackContext, new ILocationManagerCommand() {
+        _handleCallSafely(callbackContext, "isRangingAvailable", new ILocationManagerCommand() {
 
             @Override
             public PluginResult run() {
@@ -1079,10 +2332,14 @@ public class LocationManager extends CordovaPlugin implements BeaconConsumer {
 
                 } catch (BleNotAvailableException e) {
                     //if device does not support iBeacons and error is thrown
-                    debugLog("'isRangingAvailable' Device not supported: " + e.getMessage());
+                    if (isDebugLogEnabled()) {
+                        debugLog("'isRangingAvailable' Device not supported: " + e.getMessage());
+                    }
                     return new PluginResult(PluginResult.Status.ERROR, e.getMessage());
                 } catch (Exception e) {
-                    debugWarn("'isRangingAvailable' exception " + e.getMessage());
+                    if (isDebugLogEnabled()) {
+                        debugWarn("'isRangingAvailable' exception " + e.getMessage());
+                    }
                     return new PluginResult(PluginResult.Status.ERROR, e.getMessage());
                 }
             }
@@ -1091,16 +2348,25 @@ public class LocationManager extends CordovaPlugin implements BeaconConsumer {
 
     private void registerDelegateCallbackId(JSONObject arguments, final CallbackContext callbackContext) {
 
-        _handleCallSafely(callbackContext, new ILocationManagerCommand() {
+        _handleCallSafely(callbackContext, "registerDelegateCallbackId", new ILocationManagerCommand() {
 
             @Override
             public PluginResult run() {
-                debugLog("Registering delegate callback ID: " + callbackContext.getCallbackId());
+                if (isDebugLogEnabled()) {
+                    debugLog("Registering delegate callback ID: " + callbackContext.getCallbackId());
+                }
                 //delegateCallbackId = callbackContext.getCallbackId();
 
-                createMonitorCallbacks(callbackContext);
-                createRangingCallbacks(callbackContext);
-                createManagerCallbacks(callbackContext);
+                synchronized (delegateLock) {
+                    delegateRegistered = true;
+                    if (restoredDelegateCallbackContext != null) {
+                        // Events of the restored regions which are still queued go to this callback too.
+                        restoredDelegateCallbackContext.setTarget(callbackContext);
+                    }
+                    createMonitorCallbacks(callbackContext);
+                    createRangingCallbacks(callbackContext);
+                    createManagerCallbacks(callbackContext);
+                }
 
                 PluginResult result = new PluginResult(PluginResult.Status.OK);
                 result.setKeepCallback(true);
@@ -1114,7 +2380,7 @@ public class LocationManager extends CordovaPlugin implements BeaconConsumer {
      * Checks if the region is supported, both for type and content
      */
     private void isMonitoringAvailableForClass(final JSONObject arguments, final CallbackContext callbackContext) {
-        _handleCallSafely(callbackContext, new ILocationManagerCommand() {
+        _handleCallSafely(callbackContext, "isMonitoringAvailableForClass", new ILocationManagerCommand() {
 
             @Override
             public PluginResult run() {
@@ -1137,7 +2403,7 @@ public class LocationManager extends CordovaPlugin implements BeaconConsumer {
 
     private void isAdvertisingAvailable(CallbackContext callbackContext) {
 
-        _handleCallSafely(callbackContext, new ILocationManagerCommand() {
+        _handleCallSafely(callbackContext, "isAdvertisingAvailable", new ILocationManagerCommand() {
             @Override
             public PluginResult run() {
 
@@ -1160,7 +2426,7 @@ public class LocationManager extends CordovaPlugin implements BeaconConsumer {
 
     private void isAdvertising(CallbackContext callbackContext) {
 
-        _handleCallSafely(callbackContext, new ILocationManagerCommand() {
+        _handleCallSafely(callbackContext, "isAdvertising", new ILocationManagerCommand() {
             @Override
             public PluginResult run() {
 
@@ -1176,7 +2442,9 @@ public class LocationManager extends CordovaPlugin implements BeaconConsumer {
 
     private void startAdvertising(final JSONArray args, CallbackContext callbackContext) throws JSONException {
         debugLog("Advertisement start START BEACON ");
-        debugLog(args.toString(4));
+        if (isDebugLogEnabled()) {
+            debugLog(args.toString(4));
+        }
         /*
         Advertisement start START BEACON 
             [
@@ -1206,7 +2474,7 @@ public class LocationManager extends CordovaPlugin implements BeaconConsumer {
         if (major == null && minor != null)
             throw new UnsupportedOperationException("Unsupported combination of 'major' and 'minor' parameters.");
 
-        _handleCallSafely(callbackContext, new ILocationManagerCommand() {
+        _handleCallSafely(callbackContext, "startAdvertising", new ILocationManagerCommand() {
             @Override
             public PluginResult run() {
                 debugLog("Advertisement start STEP Beacon.Builder ");
@@ -1219,7 +2487,9 @@ public class LocationManager extends CordovaPlugin implements BeaconConsumer {
                         .setTxPower(measuredPower) // Power in dB
                         .setDataFields(Arrays.asList(new Long[] {0l})) // Remove this for beacon layouts without d: fields
                         .build();
-                debugLog("[DEBUG] Beacon.Builder: "+beacon);
+                if (isDebugLogEnabled()) {
+                    debugLog("[DEBUG] Beacon.Builder: " + beacon);
+                }
                 /*
                 Beacon beacon = new Beacon.Builder()
                         .setId1("00000000-2016-0000-0000-000000000000") // UUID for beacon
@@ -1235,12 +2505,16 @@ public class LocationManager extends CordovaPlugin implements BeaconConsumer {
                 debugLog("Advertisement start STEP BeaconTransmitter ");
                 final BeaconTransmitter beaconTransmitter = LocationManager.this.createOrGetBeaconTransmitter();
 
-                debugLog("[DEBUG] BeaconTransmitter: "+beaconTransmitter);
+                if (isDebugLogEnabled()) {
+                    debugLog("[DEBUG] BeaconTransmitter: " + beaconTransmitter);
+                }
                 beaconTransmitter.startAdvertising(beacon, new AdvertiseCallback() {
 
                     @Override
                     public void onStartFailure(int errorCode) {
-                        debugWarn("Advertisement start failed with code: "+errorCode);
+                        if (isDebugLogEnabled()) {
+                            debugWarn("Advertisement start failed with code: " + errorCode);
+                        }
                     }
 
                     @Override
@@ -1259,7 +2533,7 @@ public class LocationManager extends CordovaPlugin implements BeaconConsumer {
 
     private void stopAdvertising(CallbackContext callbackContext) {
 
-        _handleCallSafely(callbackContext, new ILocationManagerCommand() {
+        _handleCallSafely(callbackContext, "stopAdvertising", new ILocationManagerCommand() {
             @Override
             public PluginResult run() {
 
@@ -1290,7 +2564,7 @@ public class LocationManager extends CordovaPlugin implements BeaconConsumer {
 
         String typeName = json.getString("typeName");
         if (typeName.equals("BeaconRegion")) {
-            return parseBeaconRegion(json);
+            return BeaconSerializer.parseBeaconRegion(json);
         } else if (typeName.equals("CircularRegion")) {
             return parseCircularRegion(json);
 
@@ -1300,6 +2574,20 @@ public class LocationManager extends CordovaPlugin implements BeaconConsumer {
 
     }
 
+    /*
+     * Returns the registered region with the identifier of the JSON, parses the JSON if there is none.
+     * The library identifies regions by their identifier when stopping them, so this is enough for stop calls.
+     */
+    private Region resolveRegion(JSONObject json) throws JSONException, InvalidKeyException, UnsupportedOperationException {
+        if ("BeaconRegion".equals(json.optString("typeName"))) {
+            final RegionRegistry.Entry entry = regionRegistry.get(json.optString("identifier", null));
+            if (entry != null) {
+                return entry.region;
+            }
+        }
+        return parseRegion(json);
+    }
+
     /* NOT SUPPORTED, a possible enhancement later */
     private Region parseCircularRegion(JSONObject json) throws JSONException, InvalidKeyException, UnsupportedOperationException {
 
@@ -1320,25 +2608,6 @@ public class LocationManager extends CordovaPlugin implements BeaconConsumer {
         throw new UnsupportedOperationException("Circular regions are not supported at present");
     }
 
-    private Region parseBeaconRegion(JSONObject json) throws JSONException, UnsupportedOperationException {
-
-        String identifier = json.getString("identifier");
-
-        //For Android, uuid can be null when scanning for all beacons (I think)
-        String uuid = json.has("uuid") && !json.isNull("uuid") ? json.getString("uuid") : null;
-        String major = json.has("major") && !json.isNull("major") ? json.getString("major") : null;
-        String minor = json.has("minor") && !json.isNull("minor") ? json.getString("minor") : null;
-
-        if (major == null && minor != null)
-            throw new UnsupportedOperationException("Unsupported combination of 'major' and 'minor' parameters.");
-
-        Identifier id1 = uuid != null ? Identifier.parse(uuid) : null;
-        Identifier id2 = major != null ? Identifier.parse(major) : null;
-        Identifier id3 = minor != null ? Identifier.parse(minor) : null;
-        return new Region(identifier, id1, id2, id3);
-    }
-
-
     private String nameOfRegionState(int state) {
         switch (state) {
             case MonitorNotifier.INSIDE:
@@ -1354,33 +2623,41 @@ public class LocationManager extends CordovaPlugin implements BeaconConsumer {
 
     private JSONObject mapOfRegion(Region region) throws JSONException {
 
+        // Monitored and ranged regions are serialized once, when they are started.
+        final RegionRegistry.Entry entry = regionRegistry.get(region);
+        if (entry != null) {
+            return entry.json;
+        }
+
         //NOTE: NOT SUPPORTING CIRCULAR REGIONS
-        return mapOfBeaconRegion(region);
+        return BeaconSerializer.mapOfBeaconRegion(region);
 
     }
 
-    private JSONObject mapOfBeaconRegion(Region region) throws JSONException {
-        JSONObject dict = new JSONObject();
-
-        // identifier
-        if (region.getUniqueId() != null) {
-            dict.put("identifier", region.getUniqueId());
+    /*
+     * Maps the registered regions of the given usage from their cached JSON, plus the regions the library
+     * knows about but which were not started through this plugin instance (e.g. restored by the library).
+     */
+    private JSONArray mapOfRegisteredRegions(int usage, Collection<Region> libraryRegions) throws JSONException {
+        JSONArray regionArray = new JSONArray();
+        for (RegionRegistry.Entry entry : regionRegistry.entries(usage)) {
+            regionArray.put(entry.json);
         }
-
-        dict.put("uuid", region.getId1());
-
-        if (region.getId2() != null) {
-            dict.put("major", region.getId2());
+        for (Region region : libraryRegions) {
+            final RegionRegistry.Entry entry = regionRegistry.get(region.getUniqueId());
+            if (entry == null || (entry.usages & usage) == 0) {
+                regionArray.put(mapOfRegion(region));
+            }
         }
+        return regionArray;
+    }
 
-        if (region.getId3() != null) {
-            dict.put("minor", region.getId3());
+    private byte[] utf8OfRegion(Region region) throws JSONException {
+        final RegionRegistry.Entry entry = regionRegistry.get(region);
+        if (entry != null) {
+            return entry.utf8;
         }
-
-        dict.put("typeName", "BeaconRegion");
-
-        return dict;
-
+        return mapOfRegion(region).toString().getBytes(UTF_8);
     }
 
     /* NOT SUPPORTED */
@@ -1404,44 +2681,113 @@ public class LocationManager extends CordovaPlugin implements BeaconConsumer {
 
     }*/
 
-    private JSONObject mapOfBeacon(Beacon region) throws JSONException {
-        JSONObject dict = new JSONObject();
+    /*
+     * Picks the beacons of a ranging cycle the DOM may see: the filter of the region runs first, then nearest
+     * mode picks the K nearest beacons. Called from the library callback, so nearest mode ranks every cycle,
+     * also the ones which are coalesced or dropped later. Returns null if nothing is to be sent for the cycle:
+     * the region was started with rangingEvents set to false, or the ranking didn't change in changesOnly mode.
+     */
+    private RangingEventCoalescer.Snapshot snapshotOfRangingCycle(Collection<Beacon> iBeacons, Region region,
+                                                                  Proximities proximities, long ingressNanos) {
+        final String regionId = region.getUniqueId();
+        if (silentRangedRegions.contains(regionId)) {
+            return null;
+        }
 
-        //beacon id
-        dict.put("uuid", region.getId1());
-        dict.put("major", region.getId2());
-        dict.put("minor", region.getId3());
+        final RangingFilter filter = rangingFilters.get(regionId);
+        if (filter != null) {
+            iBeacons = filter.apply(iBeacons, proximities);
+        }
 
-        // proximity
-        dict.put("proximity", nameOfProximity(region.getDistance()));
+        final NearestBeaconTracker nearestTracker = nearestBeaconTrackers.get(regionId);
+        boolean rankingChanged = false;
+        if (nearestTracker != null) {
+            final NearestBeaconTracker.Selection selection = nearestTracker.select(iBeacons);
+            if (nearestTracker.isChangesOnly() && !selection.rankingChanged) {
+                return null;
+            }
+            iBeacons = selection.beacons;
+            rankingChanged = selection.rankingChanged;
+        }
+        return new RangingEventCoalescer.Snapshot(region, iBeacons, proximities, nearestTracker != null,
+                rankingChanged, ingressNanos);
+    }
 
-        // signal strength and transmission power
-        dict.put("rssi", region.getRssi());
-        dict.put("tx", region.getTxPower());
+    /*
+     * Turns a snapshot into the result sent to the DOM. Returns null if the region is ranged in delta mode
+     * and there is nothing new to report. Beacons dropped by the filter or nearest mode are treated by delta
+     * mode as if they weren't seen. Delta mode compares with what was sent last, so it runs at dispatch.
+     */
+    private RangingResult selectRangingResult(RangingEventCoalescer.Snapshot snapshot) {
+        final Region region = snapshot.region;
+        final Collection<Beacon> iBeacons = snapshot.beacons;
+        final Proximities proximities = snapshot.proximities;
+        final boolean rankingChanged = snapshot.rankingChanged;
+
+        final RangingDeltaTracker deltaTracker = rangingDeltaTrackers.get(region.getUniqueId());
+        if (deltaTracker == null) {
+            if (snapshot.nearest) {
+                return new RangingResult(region, iBeacons, proximities, false, true,
+                        Collections.<RangingDeltaTracker.BeaconState>emptyList(), true, rankingChanged);
+            }
+            return new RangingResult(region, iBeacons, proximities);
+        }
 
-        // accuracy = rough distance estimate limited to two decimal places (in metres)
-        // NO NOT ASSUME THIS IS ACCURATE - it is effected by radio interference and obstacles
-        dict.put("accuracy", Math.round(region.getDistance() * 100.0) / 100.0);
+        final boolean keyframe = deltaTracker.beginCycle();
+        final List<Beacon> changed = new ArrayList<Beacon>();
+        for (Beacon beacon : iBeacons) {
+            if (deltaTracker.offer(beacon, Proximity.nameOf(proximities.of(beacon)))) {
+                changed.add(beacon);
+            }
+        }
+        final List<RangingDeltaTracker.BeaconState> removed = deltaTracker.endCycle();
 
-        return dict;
+        if (!keyframe && changed.isEmpty() && removed.isEmpty() && !rankingChanged) {
+            return null;
+        }
+        return new RangingResult(region, changed, proximities, true, keyframe, removed, snapshot.nearest,
+                rankingChanged);
     }
 
-    private String nameOfProximity(double accuracy) {
+    /*
+     * Smooths the RSSI of the beacons with the parameters of the region, if it has any. Called from the
+     * library callback for every ranging cycle, everything after it works with the smoothed values.
+     */
+    private Collection<Beacon> smoothRangedBeacons(Collection<Beacon> iBeacons, Region region) {
+        final RegionRssiSmoother rssiSmoother = regionRssiSmoothers.get(region.getUniqueId());
+        return rssiSmoother != null ? rssiSmoother.apply(iBeacons) : iBeacons;
+    }
 
-        if (accuracy < 0) {
-            return "ProximityUnknown";
-            // is this correct?  does proximity only show unknown when accuracy is negative?  I have seen cases where it returns unknown when
-            // accuracy is -1;
+    private JSONObject mapOfRangingResult(RangingResult rangingResult) throws JSONException {
+        JSONObject data = new JSONObject();
+        JSONArray beaconData = new JSONArray();
+        for (Beacon beacon : rangingResult.beacons) {
+            beaconData.put(BeaconSerializer.mapOfBeacon(beacon, rangingResult.proximities));
         }
-        if (accuracy < 0.5) {
-            return "ProximityImmediate";
+
+        if (rangingResult.delta) {
+            JSONArray removedData = new JSONArray();
+            for (RangingDeltaTracker.BeaconState state : rangingResult.removed) {
+                removedData.put(mapOfBeaconIdentity(state));
+            }
+            data.put("keyframe", rangingResult.keyframe);
+            data.put("removed", removedData);
         }
-        // forums say 3.0 is the near/far threshold, but it looks to be based on experience that this is 4.0
-        if (accuracy <= 4.0) {
-            return "ProximityNear";
+        if (rangingResult.nearest) {
+            data.put("rankingChanged", rangingResult.rankingChanged);
         }
-        // if it is > 4.0 meters, call it far
-        return "ProximityFar";
+
+        data.put("region", mapOfRegion(rangingResult.region));
+        data.put("beacons", beaconData);
+        return data;
+    }
+
+    private JSONObject mapOfBeaconIdentity(RangingDeltaTracker.BeaconState state) throws JSONException {
+        JSONObject dict = new JSONObject();
+        dict.put("uuid", state.uuid);
+        dict.put("major", state.major);
+        dict.put("minor", state.minor);
+        return dict;
     }
 
     private boolean hasBlueToothPermission() {
@@ -1452,28 +2798,19 @@ public class LocationManager extends CordovaPlugin implements BeaconConsumer {
         return (access == PackageManager.PERMISSION_GRANTED) && (adminAccess == PackageManager.PERMISSION_GRANTED);
     }
 
-    //////// Async Task Handling ////////////////////////////////
+    //////// Command Handling ////////////////////////////////
 
-    private void _handleCallSafely(CallbackContext callbackContext, final ILocationManagerCommand task) {
-        _handleCallSafely(callbackContext, task, true);
+    private void _handleCallSafely(CallbackContext callbackContext, String action, final ILocationManagerCommand task) {
+        _handleCallSafely(callbackContext, action, task, true);
     }
 
-    private void _handleCallSafely(final CallbackContext callbackContext, final ILocationManagerCommand task, boolean runInBackground) {
+    private void _handleCallSafely(final CallbackContext callbackContext, String action, final ILocationManagerCommand task, boolean runInBackground) {
         if (runInBackground) {
-            new AsyncTask<Void, Void, Void>() {
-
-                @Override
-                protected Void doInBackground(final Void... params) {
-
-                    try {
-                        _sendResultOfCommand(callbackContext, task.run());
-                    } catch (Exception ex) {
-                        _handleExceptionOfCommand(callbackContext, ex);
-                    }
-                    return null;
-                }
-
-            }.execute();
+            try {
+                commandExecutor.execute(action, _commandOf(callbackContext, task));
+            } catch (RejectedExecutionException e) {
+                _rejectCommand(callbackContext, action, e);
+            }
         } else {
             try {
                 _sendResultOfCommand(callbackContext, task.run());
@@ -1483,6 +2820,45 @@ public class LocationManager extends CordovaPlugin implements BeaconConsumer {
         }
     }
 
+    /*
+     * Runs a command which starts or stops regions once the beacon service is connected, see executeWhenConnected.
+     */
+    private void _handleCallWhenConnected(CallbackContext callbackContext, String action, boolean bind, ILocationManagerCommand task) {
+        try {
+            executeWhenConnected(action, callbackContext, bind, _commandOf(callbackContext, task));
+        } catch (RejectedExecutionException e) {
+            _rejectCommand(callbackContext, action, e);
+        }
+    }
+
+    private Runnable _commandOf(final CallbackContext callbackContext, final ILocationManagerCommand task) {
+        return new Runnable() {
+
+            @Override
+            public void run() {
+
+                try {
+                    _sendResultOfCommand(callbackContext, task.run());
+                } catch (Exception ex) {
+                    _handleExceptionOfCommand(callbackContext, ex);
+                }
+            }
+
+        };
+    }
+
+    // The plugin is being destroyed and the command executor has been shut down.
+    private void _rejectCommand(CallbackContext callbackContext, String action, RejectedExecutionException exception) {
+        if (isDebugLogEnabled()) {
+            debugWarn("'" + action + "' rejected: " + exception.getMessage());
+        }
+        if (callbackContext == null) {
+            return;
+        }
+        _sendResultOfCommand(callbackContext, new PluginResult(PluginResult.Status.ERROR,
+                "LocationManager is shut down, '" + action + "' was not run"));
+    }
+
     private void _handleExceptionOfCommand(CallbackContext callbackContext, Exception exception) {
 
         Log.e(TAG, "Uncaught exception: " + exception.getMessage());
@@ -1502,7 +2878,9 @@ public class LocationManager extends CordovaPlugin implements BeaconConsumer {
 
         //debugLog("Send result: " + pluginResult.getMessage());
         if (pluginResult.getStatus() != PluginResult.Status.OK.ordinal())
-            debugWarn("WARNING: " + PluginResult.StatusMessages[pluginResult.getStatus()]);
+            if (isDebugLogEnabled()) {
+                debugWarn("WARNING: " + PluginResult.StatusMessages[pluginResult.getStatus()]);
+            }
 
         // When calling without a callback from the client side the command can be null.
         if (callbackContext == null) {
@@ -1512,19 +2890,33 @@ public class LocationManager extends CordovaPlugin implements BeaconConsumer {
         callbackContext.sendPluginResult(pluginResult);
     }
 
+    private boolean isDebugLogEnabled() {
+        return DEBUG_LOGGING && debugEnabled;
+    }
+
     private void debugInfo(String message) {
-        if (debugEnabled) {
+        if (isDebugLogEnabled()) {
             Log.i(TAG, message);
         }
     }
     private void debugLog(String message) {
-        if (debugEnabled) {
+        if (isDebugLogEnabled()) {
             Log.d(TAG, message);
         }
     }
 
+    /*
+     * The payload is only turned into a string when debug logging is enabled, pass payloads like event
+     * data as they are instead of concatenating them up front.
+     */
+    private void debugLog(String message, Object payload) {
+        if (isDebugLogEnabled()) {
+            Log.d(TAG, message + payload);
+        }
+    }
+
     private void debugWarn(String message) {
-        if (debugEnabled) {
+        if (isDebugLogEnabled()) {
             Log.w(TAG, message);
         }
     }
@@ -1534,6 +2926,60 @@ public class LocationManager extends CordovaPlugin implements BeaconConsumer {
     @Override
     public void onBeaconServiceConnect() {
         debugLog("Connected to IBeacon service");
+        synchronized (parkedCommands) {
+            beaconServiceConnected = true;
+        }
+        runParkedCommands();
+    }
+
+    /*
+     * Starts the regions of the region store again, with the options they were started with, on the command
+     * thread like any start action, binding the beacon service if it isn't yet. Their events are queued
+     * for the DOM like any other, if the DOM hasn't registered its delegate yet they are sent to it once it does.
+     */
+    private void restoreRegions(final List<RegionStore.StoredRegion> restored) {
+        if (restored.isEmpty()) {
+            return;
+        }
+
+        try {
+            executeWhenConnected("startRestoredRegions", null, true, new Runnable() {
+                @Override
+                public void run() {
+                    startRestoredRegions(restored);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            Log.w(TAG, "Not restoring regions, the plugin is shut down");
+        }
+    }
+
+    private void startRestoredRegions(List<RegionStore.StoredRegion> restored) {
+        synchronized (delegateLock) {
+            if (!delegateRegistered) {
+                restoredDelegateCallbackContext = new DelegateCallbackContext(webView);
+                createMonitorCallbacks(restoredDelegateCallbackContext);
+                createRangingCallbacks(restoredDelegateCallbackContext);
+                createManagerCallbacks(restoredDelegateCallbackContext);
+            }
+        }
+
+        for (RegionStore.StoredRegion stored : restored) {
+            try {
+                final Region region = parseRegion(stored.getRegion());
+                if (stored.isMonitored()) {
+                    startMonitoringRegion(region, stored.getMonitoringOptions());
+                    beaconServiceNotifier.didStartMonitoringForRegion(region);
+                }
+                if (stored.isRanged()) {
+                    startRangingRegion(region, stored.getRangingOptions());
+                }
+                traceBuffer.record("restoreRegion", region.getUniqueId(), stored.usages);
+            } catch (Exception e) {
+                Log.w(TAG, "Failed to restore the region " + stored.uniqueId + ": " + e.getMessage());
+            }
+        }
+        Log.i(TAG, "Restored " + restored.size() + " regions of the region store");
     }
 
     @Override
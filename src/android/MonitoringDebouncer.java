@@ -0,0 +1,172 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package com.unarin.cordova.beacon;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import org.altbeacon.beacon.MonitorNotifier;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Holds back the monitoring events of a region until its new state held for a while, so the enter/exit/enter
+ * bursts at region boundaries reach the DOM as a single transition, or not at all.
+ * Per region, an enter is dispatched once the region was inside for enterDebounceMilliseconds and an exit
+ * once it was outside for exitGraceMilliseconds. If the state flips back before that, the held back events
+ * are dropped and counted as suppressed. Regions without windows are dispatched right away.
+ */
+class MonitoringDebouncer {
+
+    interface Listener {
+        void onSuppressed(String regionId, int state);
+    }
+
+    private static final int STATE_UNDETERMINED = -1;
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final HashMap<String, RegionState> regions = new HashMap<String, RegionState>();
+    private final AtomicLong suppressed = new AtomicLong();
+    private final Listener listener;
+
+    MonitoringDebouncer(Listener listener) {
+        this.listener = listener;
+    }
+
+    /*
+     * Sets the windows of a region from the 'enterDebounceMilliseconds' and 'exitGraceMilliseconds'
+     * monitoring options, restarting it resets its state. Without options the region isn't debounced.
+     */
+    public synchronized void configure(String regionId, JSONObject options) {
+        remove(regionId);
+        final long enterDebounce = options != null ? Math.max(0, options.optLong("enterDebounceMilliseconds", 0)) : 0;
+        final long exitGrace = options != null ? Math.max(0, options.optLong("exitGraceMilliseconds", 0)) : 0;
+        if (enterDebounce > 0 || exitGrace > 0) {
+            regions.put(regionId, new RegionState(enterDebounce, exitGrace));
+        }
+    }
+
+    public synchronized void remove(String regionId) {
+        final RegionState regionState = regions.remove(regionId);
+        if (regionState != null && regionState.flushTask != null) {
+            handler.removeCallbacks(regionState.flushTask);
+        }
+    }
+
+    /*
+     * Dispatches the event of a region, now or once its state held for the window of the region.
+     * transition tells enter and exit events apart from didDetermineStateForRegion, only they are counted
+     * when suppressed. An enter or exit to the state the DOM already knows is suppressed as well, it is
+     * the second half of a flip which was held back.
+     */
+    public synchronized void offer(final String regionId, int state, boolean transition, Runnable dispatch) {
+        final RegionState regionState = regions.get(regionId);
+        if (regionState == null) {
+            dispatch.run();
+            return;
+        }
+
+        if (regionState.flushTask != null) {
+            if (regionState.pendingState == state) {
+                // E.g. didDetermineStateForRegion following the didEnterRegion it belongs to.
+                regionState.pending.add(dispatch);
+                if (transition) {
+                    regionState.pendingTransitions++;
+                }
+                return;
+            }
+            // Flipped before the window elapsed, none of the held back events are delivered.
+            handler.removeCallbacks(regionState.flushTask);
+            regionState.flushTask = null;
+            regionState.pending.clear();
+            suppress(regionId, regionState.pendingState, regionState.pendingTransitions);
+        }
+
+        if (state == regionState.dispatchedState) {
+            if (transition) {
+                suppress(regionId, state, 1);
+            } else {
+                dispatch.run();
+            }
+            return;
+        }
+
+        final long window = state == MonitorNotifier.INSIDE ? regionState.enterDebounce : regionState.exitGrace;
+        if (window == 0) {
+            regionState.dispatchedState = state;
+            dispatch.run();
+            return;
+        }
+
+        regionState.pendingState = state;
+        regionState.pending.add(dispatch);
+        regionState.pendingTransitions = transition ? 1 : 0;
+        regionState.flushTask = new Runnable() {
+            @Override
+            public void run() {
+                flush(regionId, this);
+            }
+        };
+        handler.postDelayed(regionState.flushTask, window);
+    }
+
+    public long getSuppressedCount() {
+        return suppressed.get();
+    }
+
+    private synchronized void flush(String regionId, Runnable flushTask) {
+        final RegionState regionState = regions.get(regionId);
+        if (regionState == null || regionState.flushTask != flushTask) {
+            return;
+        }
+        regionState.flushTask = null;
+        regionState.dispatchedState = regionState.pendingState;
+        for (Runnable dispatch : regionState.pending) {
+            dispatch.run();
+        }
+        regionState.pending.clear();
+    }
+
+    private void suppress(String regionId, int state, int transitions) {
+        if (transitions == 0) {
+            return;
+        }
+        suppressed.addAndGet(transitions);
+        listener.onSuppressed(regionId, state);
+    }
+
+    private static final class RegionState {
+        final long enterDebounce;
+        final long exitGrace;
+        final List<Runnable> pending = new ArrayList<Runnable>();
+        int dispatchedState = STATE_UNDETERMINED;
+        int pendingState = STATE_UNDETERMINED;
+        int pendingTransitions;
+        Runnable flushTask;
+
+        RegionState(long enterDebounce, long exitGrace) {
+            this.enterDebounce = enterDebounce;
+            this.exitGrace = exitGrace;
+        }
+    }
+}
@@ -0,0 +1,371 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package com.unarin.cordova.beacon;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/*
+ * Append-only log of the monitoring events on their way to the DOM, so the ones which were not delivered
+ * when the process died are delivered after the next start (at least once).
+ *
+ * An event is appended before it is queued and acknowledged by an ack record once it was handed to the
+ * bridge. Records are written straight to the file channel, which survives the death of the process; the
+ * channel is forced to the disk periodically, not per event. Every record is
+ *
+ *   u8 type (TYPE_EVENT or TYPE_ACK), u64 sequence, u32 payload length, payload, u32 CRC32 of the above
+ *
+ * A torn record at the end of the file ends the log. Opening the log compacts it to the unacknowledged
+ * events, and it is truncated whenever every event has been acknowledged and it grew beyond COMPACT_SIZE.
+ *
+ * All file access happens on the thread of the log, which owns the channel and the sequences. append and
+ * acknowledge only queue their record for it and return right away, so the callback thread of the library
+ * never waits for the disk. The log is opened by the first task of that thread, events appended before it
+ * is open wait in its queue and are written once it is, in the order they were appended.
+ */
+class MonitoringEventLog {
+
+    static final int TYPE_EVENT = 1;
+    static final int TYPE_ACK = 2;
+
+    private static final String TAG = "com.unarin.beacon";
+    private static final int HEADER_LENGTH = 1 + 8 + 4;
+    private static final int CRC_LENGTH = 4;
+    private static final long COMPACT_SIZE = 64 * 1024;
+    private static final long FORCE_INTERVAL_MILLIS = 1000;
+    private static final long CLOSE_TIMEOUT_MILLIS = 1000;
+
+    interface RecoveryListener {
+        void onRecovered(List<Event> events);
+    }
+
+    /*
+     * An event of the log. Its sequence is assigned on the thread of the log when the event is written,
+     * it stays -1 if the log couldn't write it.
+     */
+    static final class Event {
+
+        final byte[] payload;
+        long sequence = -1;
+
+        Event(byte[] payload) {
+            this.payload = payload;
+        }
+
+        Event(long sequence, byte[] payload) {
+            this.sequence = sequence;
+            this.payload = payload;
+        }
+    }
+
+    private final File file;
+    private final ScheduledExecutorService executor;
+    private final CRC32 crc = new CRC32();
+
+    // Only used on the thread of the log.
+    private final ArrayList<Event> recovered = new ArrayList<Event>();
+    private RandomAccessFile randomAccessFile;
+    private FileChannel channel; // null until the log is open, or if it failed to open
+    private long nextSequence;
+    private long pending;
+    private boolean dirty;
+
+    private MonitoringEventLog(File file) {
+        this.file = file;
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                return new Thread(runnable, "LocationManager-eventlog");
+            }
+        });
+    }
+
+    /*
+     * Returns the log right away and opens it in the background, reading the events which were not
+     * acknowledged before it is compacted to them.
+     */
+    static MonitoringEventLog open(File file) {
+        final MonitoringEventLog log = new MonitoringEventLog(file);
+        log.executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                log.recover();
+            }
+        });
+        return log;
+    }
+
+    private void recover() {
+        try {
+            final LinkedHashMap<Long, byte[]> unacknowledged = new LinkedHashMap<Long, byte[]>();
+            final long lastSequence = compact(file, unacknowledged);
+
+            for (Map.Entry<Long, byte[]> entry : unacknowledged.entrySet()) {
+                recovered.add(new Event(entry.getKey(), entry.getValue()));
+            }
+            nextSequence = lastSequence + 1;
+            pending = unacknowledged.size();
+            randomAccessFile = new RandomAccessFile(file, "rw");
+            channel = randomAccessFile.getChannel();
+            channel.position(channel.size());
+
+            executor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    force();
+                }
+            }, FORCE_INTERVAL_MILLIS, FORCE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (IOException e) {
+            Log.w(TAG, "Monitoring events won't be durable, failed to open the event log: " + e.getMessage());
+        }
+    }
+
+    /*
+     * Reads the events which were not acknowledged and rewrites the log with only these, dropping acks and
+     * torn records. Returns the highest sequence seen.
+     */
+    private static long compact(File file, LinkedHashMap<Long, byte[]> unacknowledged) throws IOException {
+        long lastSequence = 0;
+
+        if (file.exists()) {
+            final RandomAccessFile input = new RandomAccessFile(file, "r");
+            try {
+                final FileChannel inputChannel = input.getChannel();
+                final ByteBuffer buffer = ByteBuffer.allocate((int) inputChannel.size());
+                while (buffer.hasRemaining() && inputChannel.read(buffer) >= 0) {
+                    // read it all
+                }
+                buffer.flip();
+                lastSequence = readRecords(buffer, unacknowledged);
+            } finally {
+                input.close();
+            }
+        }
+
+        final File compacted = new File(file.getPath() + ".tmp");
+        final RandomAccessFile output = new RandomAccessFile(compacted, "rw");
+        try {
+            output.setLength(0);
+            final FileChannel outputChannel = output.getChannel();
+            final CRC32 crc = new CRC32();
+            for (Map.Entry<Long, byte[]> entry : unacknowledged.entrySet()) {
+                outputChannel.write(record(crc, TYPE_EVENT, entry.getKey(), entry.getValue()));
+            }
+            outputChannel.force(true);
+        } finally {
+            output.close();
+        }
+        if (!compacted.renameTo(file)) {
+            throw new IOException("Unable to replace " + file);
+        }
+        return lastSequence;
+    }
+
+    /*
+     * Hands the events which were pending when the log was opened to the listener, once, on the thread of
+     * the log as soon as it is open. They stay pending until acknowledged.
+     */
+    void replay(final RecoveryListener listener) {
+        submit(new Runnable() {
+            @Override
+            public void run() {
+                final List<Event> events = new ArrayList<Event>(recovered);
+                recovered.clear();
+                listener.onRecovered(events);
+            }
+        });
+    }
+
+    /*
+     * Queues an event for the thread of the log and returns it for the acknowledgement. Doesn't wait for
+     * the log to be open or the record to be written.
+     */
+    Event append(byte[] payload) {
+        final Event event = new Event(payload);
+        submit(new Runnable() {
+            @Override
+            public void run() {
+                write(event);
+            }
+        });
+        return event;
+    }
+
+    private void write(Event event) {
+        if (channel == null) {
+            return;
+        }
+        final long sequence = nextSequence++;
+        try {
+            channel.write(record(crc, TYPE_EVENT, sequence, event.payload));
+            event.sequence = sequence;
+            pending++;
+            dirty = true;
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to append to the monitoring event log: " + e.getMessage());
+        }
+    }
+
+    /*
+     * Acknowledges an event which was delivered, it won't be replayed. Queued behind the append of the event,
+     * so it is acknowledged by the sequence it was written with.
+     */
+    void acknowledge(final Event event) {
+        submit(new Runnable() {
+            @Override
+            public void run() {
+                writeAck(event.sequence);
+            }
+        });
+    }
+
+    private void writeAck(long sequence) {
+        if (sequence < 0 || channel == null) {
+            return;
+        }
+        try {
+            pending--;
+            if (pending <= 0 && channel.size() >= COMPACT_SIZE) {
+                pending = 0;
+                channel.truncate(0);
+                channel.position(0);
+            } else {
+                channel.write(record(crc, TYPE_ACK, sequence, null));
+            }
+            dirty = true;
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to acknowledge in the monitoring event log: " + e.getMessage());
+        }
+    }
+
+    /*
+     * Writes what was queued so far, syncs and closes the file and stops the thread of the log. Waits up to
+     * CLOSE_TIMEOUT_MILLIS for that, an open still in progress included.
+     */
+    void close() {
+        submit(new Runnable() {
+            @Override
+            public void run() {
+                closeChannel();
+            }
+        });
+        executor.shutdown();
+        try {
+            executor.awaitTermination(CLOSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void closeChannel() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.force(true);
+            randomAccessFile.close();
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to close the monitoring event log: " + e.getMessage());
+        }
+        channel = null;
+    }
+
+    private void submit(Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // closed
+        }
+    }
+
+    private void force() {
+        if (!dirty || channel == null) {
+            return;
+        }
+        try {
+            channel.force(false);
+            dirty = false;
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to sync the monitoring event log " + file + ": " + e.getMessage());
+        }
+    }
+
+    private static ByteBuffer record(CRC32 crc, int type, long sequence, byte[] payload) {
+        final int payloadLength = payload != null ? payload.length : 0;
+        final ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH + payloadLength + CRC_LENGTH);
+        buffer.put((byte) type);
+        buffer.putLong(sequence);
+        buffer.putInt(payloadLength);
+        if (payload != null) {
+            buffer.put(payload);
+        }
+        crc.reset();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int) crc.getValue());
+        buffer.flip();
+        return buffer;
+    }
+
+    /*
+     * Collects the events without an ack in the order they were written, returns the highest sequence seen.
+     */
+    private static long readRecords(ByteBuffer buffer, LinkedHashMap<Long, byte[]> unacknowledged) {
+        final CRC32 crc = new CRC32();
+        long lastSequence = 0;
+        while (buffer.remaining() >= HEADER_LENGTH + CRC_LENGTH) {
+            final int start = buffer.position();
+            final int type = buffer.get();
+            final long sequence = buffer.getLong();
+            final int payloadLength = buffer.getInt();
+            if (payloadLength < 0 || buffer.remaining() < payloadLength + CRC_LENGTH) {
+                break; // torn write
+            }
+            final byte[] payload = new byte[payloadLength];
+            buffer.get(payload);
+            crc.reset();
+            crc.update(buffer.array(), start, HEADER_LENGTH + payloadLength);
+            if (buffer.getInt() != (int) crc.getValue()) {
+                break;
+            }
+
+            lastSequence = Math.max(lastSequence, sequence);
+            if (type == TYPE_EVENT) {
+                unacknowledged.put(sequence, payload);
+            } else if (type == TYPE_ACK) {
+                unacknowledged.remove(sequence);
+            }
+        }
+        return lastSequence;
+    }
+}
@@ -0,0 +1,177 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package com.unarin.cordova.beacon;
+
+import org.altbeacon.beacon.Beacon;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/*
+ * Keeps the K nearest beacons of a ranged region, ranked by an exponentially smoothed distance so that
+ * a single noisy reading doesn't reorder the list. Selection uses a bounded max-heap of K entries,
+ * a cycle costs O(n log K) regardless of how many beacons are in range.
+ *
+ * Not thread safe, it is only used from the ranging callback of the library, which runs on the main thread.
+ */
+class NearestBeaconTracker {
+
+    static final int DEFAULT_COUNT = 3;
+    static final double DEFAULT_SMOOTHING = 0.3;
+    static final int DEFAULT_MEMORY_CYCLES = 3;
+
+    /* Farthest first, so the head of the heap is the one to evict. Unknown distances count as infinitely far. */
+    private static final Comparator<Candidate> FARTHEST_FIRST = new Comparator<Candidate>() {
+        @Override
+        public int compare(Candidate lhs, Candidate rhs) {
+            return Double.compare(rhs.distance, lhs.distance);
+        }
+    };
+
+    private final int count;
+    private final double smoothing;
+    private final int memoryCycles;
+    private final boolean changesOnly;
+
+    private final HashMap<IdentifierKey, Candidate> candidates = new HashMap<IdentifierKey, Candidate>();
+    private final PriorityQueue<Candidate> heap;
+    private IdentifierKey[] lastRanking = new IdentifierKey[0];
+    private int cycle;
+
+    NearestBeaconTracker(int count, double smoothing, int memoryCycles, boolean changesOnly) {
+        this.count = Math.max(1, count);
+        this.smoothing = Math.min(1.0, Math.max(0.01, smoothing));
+        this.memoryCycles = Math.max(1, memoryCycles);
+        this.changesOnly = changesOnly;
+        this.heap = new PriorityQueue<Candidate>(this.count + 1, FARTHEST_FIRST);
+    }
+
+    /*
+     * Reads the 'nearest' ranging option, missing values fall back to the defaults.
+     */
+    static NearestBeaconTracker fromJson(JSONObject json) {
+        if (json == null) {
+            json = new JSONObject();
+        }
+        return new NearestBeaconTracker(
+                json.optInt("count", DEFAULT_COUNT),
+                json.optDouble("smoothing", DEFAULT_SMOOTHING),
+                json.optInt("memoryCycles", DEFAULT_MEMORY_CYCLES),
+                json.optBoolean("changesOnly", false));
+    }
+
+    /* If set, cycles which don't change the ranking are not sent to the DOM. */
+    boolean isChangesOnly() {
+        return changesOnly;
+    }
+
+    /*
+     * Feeds the beacons of a ranging cycle and returns the K nearest of them, nearest first.
+     * Only beacons ranged in this cycle are ranked, the smoothed distance of a beacon which was missed is
+     * remembered for memoryCycles cycles in case it shows up again.
+     */
+    Selection select(Collection<Beacon> beacons) {
+        cycle++;
+        for (Beacon beacon : beacons) {
+            final IdentifierKey key = IdentifierKey.of(beacon);
+            Candidate candidate = candidates.get(key);
+            if (candidate != null && candidate.lastSeenCycle == cycle) {
+                continue; // already in the heap, its key must not change
+            }
+            final double distance = distanceOf(beacon);
+            if (candidate == null) {
+                candidate = new Candidate(key, distance);
+                candidates.put(key, candidate);
+            } else if (distance == Double.MAX_VALUE || candidate.distance == Double.MAX_VALUE) {
+                candidate.distance = distance;
+            } else {
+                candidate.distance += smoothing * (distance - candidate.distance);
+            }
+            candidate.beacon = beacon;
+            candidate.lastSeenCycle = cycle;
+
+            heap.offer(candidate);
+            if (heap.size() > count) {
+                heap.poll();
+            }
+        }
+
+        final int size = heap.size();
+        final Beacon[] nearest = new Beacon[size];
+        final IdentifierKey[] ranking = new IdentifierKey[size];
+        for (int i = size - 1; i >= 0; i--) {
+            final Candidate candidate = heap.poll();
+            nearest[i] = candidate.beacon;
+            ranking[i] = candidate.key;
+        }
+
+        final Iterator<Candidate> iterator = candidates.values().iterator();
+        while (iterator.hasNext()) {
+            final Candidate candidate = iterator.next();
+            if (cycle - candidate.lastSeenCycle >= memoryCycles) {
+                iterator.remove();
+            } else if (candidate.lastSeenCycle != cycle) {
+                candidate.beacon = null;
+            }
+        }
+
+        final boolean changed = !Arrays.equals(ranking, lastRanking);
+        lastRanking = ranking;
+
+        final List<Beacon> result = new ArrayList<Beacon>(size);
+        for (Beacon beacon : nearest) {
+            result.add(beacon);
+        }
+        return new Selection(result, changed);
+    }
+
+    private static double distanceOf(Beacon beacon) {
+        final double distance = beacon.getDistance();
+        return distance < 0 ? Double.MAX_VALUE : distance;
+    }
+
+    static final class Selection {
+        final List<Beacon> beacons;
+        final boolean rankingChanged;
+
+        Selection(List<Beacon> beacons, boolean rankingChanged) {
+            this.beacons = beacons;
+            this.rankingChanged = rankingChanged;
+        }
+    }
+
+    private static final class Candidate {
+        final IdentifierKey key;
+        double distance;
+        Beacon beacon;
+        int lastSeenCycle;
+
+        Candidate(IdentifierKey key, double distance) {
+            this.key = key;
+            this.distance = distance;
+        }
+    }
+}
@@ -18,9 +18,14 @@
 */
 package com.unarin.cordova.beacon;
 
+import android.os.Looper;
+
+import java.util.Iterator;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -29,23 +34,74 @@ class PausableThreadPoolExecutor extends ThreadPoolExecutor {
 
     private static int NUMBER_OF_CORES = 1; //Runtime.getRuntime().availableProcessors();
     private static int KEEP_ALIVE_SECONDS = 30;
+    private static final long BLOCK_PRODUCER_TIMEOUT_MILLISECONDS = 1000;
     private boolean paused;
+    private boolean waitingForResume;
     private ReentrantLock pauseLock = new ReentrantLock();
     private Condition unpaused = pauseLock.newCondition();
+
+    private final AtomicLong enqueuedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong replayedCount = new AtomicLong();
+    private final PipelineMetrics metrics;
+    private volatile EventTask runningTask;
+
     public PausableThreadPoolExecutor(BlockingQueue<Runnable> workQueue) {
+        this(workQueue, EventQueueOverflowPolicy.DROP_OLDEST);
+    }
+
+    public PausableThreadPoolExecutor(BlockingQueue<Runnable> workQueue, EventQueueOverflowPolicy overflowPolicy) {
+        this(workQueue, overflowPolicy, new PipelineMetrics());
+    }
+
+    public PausableThreadPoolExecutor(BlockingQueue<Runnable> workQueue, EventQueueOverflowPolicy overflowPolicy,
+                                      PipelineMetrics metrics) {
         super(NUMBER_OF_CORES, NUMBER_OF_CORES, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, workQueue);
+        this.metrics = metrics;
+        setRejectedExecutionHandler(new OverflowHandler(overflowPolicy));
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        enqueuedCount.incrementAndGet();
+        metrics.recordEnqueued(PipelineMetrics.typeOf(command));
+        super.execute(command);
+    }
+
+    @Override
+    protected void afterExecute(Runnable r, Throwable t) {
+        super.afterExecute(r, t);
+        runningTask = null;
+        metrics.recordDispatched(PipelineMetrics.typeOf(r));
+    }
+
+    /*
+     * The event the worker thread is running, or null.
+     */
+    public EventTask getRunningTask() {
+        return runningTask;
     }
 
     protected void beforeExecute(Thread t, Runnable r) {
         super.beforeExecute(t, r);
         pauseLock.lock();
         try {
-            while (paused) unpaused.await();
+            while (paused) {
+                waitingForResume = true;
+                unpaused.await();
+            }
         } catch (InterruptedException ie) {
             t.interrupt();
         } finally {
+            waitingForResume = false;
             pauseLock.unlock();
         }
+
+        if (r instanceof EventTask) {
+            final EventTask task = (EventTask) r;
+            runningTask = task;
+            metrics.recordQueueWait(task.eventType, System.nanoTime() - task.ingressNanos);
+        }
     }
 
     public boolean isPaused() {
@@ -64,10 +120,115 @@ class PausableThreadPoolExecutor extends ThreadPoolExecutor {
     public void resume() {
         pauseLock.lock();
         try {
+            if (paused) {
+                // Everything held back while paused gets replayed now, including the task the worker is parked on.
+                replayedCount.addAndGet(getQueue().size() + (waitingForResume ? 1 : 0));
+            }
             paused = false;
             unpaused.signalAll();
         } finally {
             pauseLock.unlock();
         }
     }
-}
\ No newline at end of file
+
+    public long getEnqueuedCount() {
+        return enqueuedCount.get();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public long getReplayedCount() {
+        return replayedCount.get();
+    }
+
+    private void drop(Runnable task) {
+        droppedCount.incrementAndGet();
+        metrics.recordDropped(PipelineMetrics.typeOf(task));
+        if (task instanceof EventTask) {
+            ((EventTask) task).discard();
+        }
+    }
+
+    private class OverflowHandler implements RejectedExecutionHandler {
+
+        private final EventQueueOverflowPolicy overflowPolicy;
+
+        OverflowHandler(EventQueueOverflowPolicy overflowPolicy) {
+            this.overflowPolicy = overflowPolicy;
+        }
+
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                drop(r);
+                return;
+            }
+
+            final BlockingQueue<Runnable> queue = executor.getQueue();
+
+            EventQueueOverflowPolicy policy = overflowPolicy;
+            if (policy == EventQueueOverflowPolicy.BLOCK_PRODUCER && isMainThread()) {
+                // The library reports on the main thread, blocking it would freeze the app and, while paused,
+                // the WebView that has to call onDomDelegateReady to drain the queue.
+                policy = EventQueueOverflowPolicy.DROP_RANGING_FIRST;
+            }
+
+            switch (policy) {
+                case BLOCK_PRODUCER:
+                    try {
+                        if (!queue.offer(r, BLOCK_PRODUCER_TIMEOUT_MILLISECONDS, TimeUnit.MILLISECONDS)) {
+                            drop(r);
+                        }
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        drop(r);
+                    }
+                    return;
+                case DROP_RANGING_FIRST:
+                    if (dropOldestRangingTask(queue)) {
+                        break;
+                    }
+                    if (r instanceof RangingEventTask) {
+                        drop(r);
+                        return;
+                    }
+                    dropOldestTask(queue);
+                    break;
+                case DROP_OLDEST:
+                default:
+                    dropOldestTask(queue);
+                    break;
+            }
+
+            if (!queue.offer(r)) {
+                drop(r);
+            }
+        }
+
+        private boolean isMainThread() {
+            final Looper mainLooper = Looper.getMainLooper();
+            return mainLooper != null && Looper.myLooper() == mainLooper;
+        }
+
+        private void dropOldestTask(BlockingQueue<Runnable> queue) {
+            final Runnable oldest = queue.poll();
+            if (oldest != null) {
+                drop(oldest);
+            }
+        }
+
+        private boolean dropOldestRangingTask(BlockingQueue<Runnable> queue) {
+            final Iterator<Runnable> iterator = queue.iterator();
+            while (iterator.hasNext()) {
+                final Runnable task = iterator.next();
+                if (task instanceof RangingEventTask && queue.remove(task)) {
+                    drop(task);
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
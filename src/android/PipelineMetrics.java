@@ -0,0 +1,323 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package com.unarin.cordova.beacon;
+
+import org.altbeacon.beacon.Beacon;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * Counters of the event pipeline, from the ranging cycles of the library to the results handed to the
+ * bridge. Everything is recorded with atomic operations, so the counters can stay on in production.
+ *
+ * The library reports a scan cycle region by region, a cycle ends when a region is reported again or no
+ * region was reported for CYCLE_GAP_NANOS. A cycle is counted, with its distinct beacons, when it ended:
+ * on the next ranging callback, or on toJson() once the gap elapsed, so the last cycle before scanning
+ * stops is counted too. The ranging callbacks of the library all come on the main thread, so the cycle
+ * being collected has a single writer and is kept in reused arrays, without a lock or allocations per
+ * callback. Only its number of distinct beacons is shared, closing it is a compare-and-set on that.
+ *
+ * Per event type (the eventType sent to the DOM, like didRangeBeaconsInRegion or didEnterRegion) it counts the events enqueued, dispatched and dropped by the event queue, and keeps
+ * latency histograms of the stages an event goes through: waiting in the event queue, serialization,
+ * sendPluginResult, and end to end from the library callback (its ingress) until sendPluginResult returned.
+ * The scan cycle rate is taken over the last minute, in one second buckets.
+ */
+class PipelineMetrics {
+
+    static final String OTHER = "other";
+
+    private static final int RATE_BUCKETS = 60;
+    private static final long CYCLE_GAP_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+
+    private final ConcurrentHashMap<String, EventStats> events = new ConcurrentHashMap<String, EventStats>();
+    private final AtomicLong scanCycles = new AtomicLong();
+    private final AtomicLong rangedBeacons = new AtomicLong();
+    private final AtomicLong maxBeaconsPerCycle = new AtomicLong();
+    private final AtomicLongArray cycleBuckets = new AtomicLongArray(RATE_BUCKETS);
+    private final AtomicLongArray cycleBucketSeconds = new AtomicLongArray(RATE_BUCKETS);
+
+    // The distinct beacons of the open scan cycle, CLOSED_CYCLE once it was counted.
+    private static final int CLOSED_CYCLE = -1;
+    private final AtomicInteger openCycleBeacons = new AtomicInteger(CLOSED_CYCLE);
+    private volatile long lastCallbackNanos;
+
+    // The open scan cycle, only touched by recordRangingCallback. The beacons are an open addressing table
+    // by their identifiers, it is grown when half full and only ever allocates then.
+    private String[] cycleRegions = new String[4];
+    private int cycleRegionCount;
+    private Beacon[] cycleBeacons = new Beacon[64];
+    private int cycleBeaconCount;
+
+    static String typeOf(Runnable task) {
+        return task instanceof EventTask ? ((EventTask) task).eventType : OTHER;
+    }
+
+    void recordEnqueued(String eventType) {
+        statsOf(eventType).enqueued.incrementAndGet();
+    }
+
+    void recordDispatched(String eventType) {
+        statsOf(eventType).dispatched.incrementAndGet();
+    }
+
+    void recordDropped(String eventType) {
+        statsOf(eventType).dropped.incrementAndGet();
+    }
+
+    void recordQueueWait(String eventType, long nanos) {
+        statsOf(eventType).queueWait.record(nanos);
+    }
+
+    void recordSerialization(String eventType, long nanos) {
+        statsOf(eventType).serialization.record(nanos);
+    }
+
+    void recordSend(String eventType, long nanos) {
+        statsOf(eventType).send.record(nanos);
+    }
+
+    void recordEndToEnd(String eventType, long nanos) {
+        statsOf(eventType).endToEnd.record(nanos);
+    }
+
+    /*
+     * Feeds a didRangeBeaconsInRegion callback of the library, counting the scan cycle it belongs to once
+     * the cycle ended. Only to be called from the ranging callback, on the main thread.
+     */
+    void recordRangingCallback(String regionId, Collection<Beacon> beacons) {
+        final long now = System.nanoTime();
+        int open = openCycleBeacons.get();
+        if (open == CLOSED_CYCLE) {
+            // The first callback, or toJson() counted the cycle meanwhile.
+            clearCycle();
+        } else if (containsRegion(regionId) || now - lastCallbackNanos > CYCLE_GAP_NANOS) {
+            if (openCycleBeacons.compareAndSet(open, CLOSED_CYCLE)) {
+                recordScanCycle(open);
+            }
+            open = CLOSED_CYCLE;
+            clearCycle();
+        }
+
+        lastCallbackNanos = now;
+        addRegion(regionId);
+        for (Beacon beacon : beacons) {
+            addBeacon(beacon);
+        }
+        if (!openCycleBeacons.compareAndSet(open, cycleBeaconCount)) {
+            // toJson() counted the cycle before this callback was added, it starts the next one.
+            clearCycle();
+            addRegion(regionId);
+            for (Beacon beacon : beacons) {
+                addBeacon(beacon);
+            }
+            openCycleBeacons.set(cycleBeaconCount);
+        }
+    }
+
+    /*
+     * Counts the open scan cycle if no region was reported for CYCLE_GAP_NANOS, scanning stopped or paused.
+     */
+    private void closeIdleCycle() {
+        final long last = lastCallbackNanos;
+        final int open = openCycleBeacons.get();
+        if (open != CLOSED_CYCLE && System.nanoTime() - last > CYCLE_GAP_NANOS
+                && openCycleBeacons.compareAndSet(open, CLOSED_CYCLE)) {
+            recordScanCycle(open);
+        }
+    }
+
+    private boolean containsRegion(String regionId) {
+        for (int i = 0; i < cycleRegionCount; i++) {
+            if (cycleRegions[i].equals(regionId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void addRegion(String regionId) {
+        if (cycleRegionCount == cycleRegions.length) {
+            cycleRegions = Arrays.copyOf(cycleRegions, cycleRegionCount * 2);
+        }
+        cycleRegions[cycleRegionCount++] = regionId;
+    }
+
+    private void addBeacon(Beacon beacon) {
+        if (2 * (cycleBeaconCount + 1) > cycleBeacons.length) {
+            final Beacon[] old = cycleBeacons;
+            cycleBeacons = new Beacon[old.length * 2];
+            cycleBeaconCount = 0;
+            for (Beacon added : old) {
+                if (added != null) {
+                    addBeacon(added);
+                }
+            }
+        }
+        final int mask = cycleBeacons.length - 1;
+        int slot = hashOf(beacon) & mask;
+        while (cycleBeacons[slot] != null) {
+            if (sameIdentifiers(cycleBeacons[slot], beacon)) {
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        cycleBeacons[slot] = beacon;
+        cycleBeaconCount++;
+    }
+
+    private void clearCycle() {
+        Arrays.fill(cycleRegions, 0, cycleRegionCount, null);
+        cycleRegionCount = 0;
+        if (cycleBeaconCount > 0) {
+            Arrays.fill(cycleBeacons, null);
+            cycleBeaconCount = 0;
+        }
+    }
+
+    private static int hashOf(Beacon beacon) {
+        int result = beacon.getId1() != null ? beacon.getId1().hashCode() : 0;
+        result = 31 * result + (beacon.getId2() != null ? beacon.getId2().hashCode() : 0);
+        result = 31 * result + (beacon.getId3() != null ? beacon.getId3().hashCode() : 0);
+        return result ^ (result >>> 16);
+    }
+
+    private static boolean sameIdentifiers(Beacon a, Beacon b) {
+        return IdentifierKey.sameIdentifier(a.getId1(), b.getId1())
+                && IdentifierKey.sameIdentifier(a.getId2(), b.getId2())
+                && IdentifierKey.sameIdentifier(a.getId3(), b.getId3());
+    }
+
+    private void recordScanCycle(int beacons) {
+        scanCycles.incrementAndGet();
+        rangedBeacons.addAndGet(beacons);
+        updateMax(maxBeaconsPerCycle, beacons);
+
+        final long second = System.nanoTime() / 1000000000L;
+        final int bucket = (int) (second % RATE_BUCKETS);
+        final long bucketSecond = cycleBucketSeconds.get(bucket);
+        if (bucketSecond != second && cycleBucketSeconds.compareAndSet(bucket, bucketSecond, second)) {
+            // A stale bucket, the cycles of the same second racing with the reset may be lost.
+            cycleBuckets.set(bucket, 0);
+        }
+        cycleBuckets.incrementAndGet(bucket);
+    }
+
+    /*
+     * The number of scan cycles of the last 60 seconds.
+     */
+    long getScanCyclesPerMinute() {
+        final long second = System.nanoTime() / 1000000000L;
+        long cycles = 0;
+        for (int bucket = 0; bucket < RATE_BUCKETS; bucket++) {
+            if (second - cycleBucketSeconds.get(bucket) < RATE_BUCKETS) {
+                cycles += cycleBuckets.get(bucket);
+            }
+        }
+        return cycles;
+    }
+
+    JSONObject toJson() throws JSONException {
+        closeIdleCycle();
+        final long cycles = scanCycles.get();
+
+        JSONObject scanning = new JSONObject();
+        scanning.put("cycles", cycles);
+        scanning.put("cyclesPerMinute", getScanCyclesPerMinute());
+        scanning.put("avgBeaconsPerCycle", cycles > 0 ? (double) rangedBeacons.get() / cycles : 0);
+        scanning.put("maxBeaconsPerCycle", maxBeaconsPerCycle.get());
+
+        JSONObject eventData = new JSONObject();
+        for (EventStats eventStats : events.values()) {
+            eventData.put(eventStats.eventType, eventStats.toJson());
+        }
+
+        JSONObject json = new JSONObject();
+        json.put("scanning", scanning);
+        json.put("events", eventData);
+        return json;
+    }
+
+    private EventStats statsOf(String eventType) {
+        EventStats eventStats = events.get(eventType);
+        if (eventStats == null) {
+            final EventStats created = new EventStats(eventType);
+            eventStats = events.putIfAbsent(eventType, created);
+            if (eventStats == null) {
+                eventStats = created;
+            }
+        }
+        return eventStats;
+    }
+
+    private static void updateMax(AtomicLong max, long value) {
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1000000.0;
+    }
+
+    private static final class EventStats {
+
+        final String eventType;
+        final AtomicLong enqueued = new AtomicLong();
+        final AtomicLong dispatched = new AtomicLong();
+        final AtomicLong dropped = new AtomicLong();
+        final LatencyHistogram queueWait = new LatencyHistogram();
+        final LatencyHistogram serialization = new LatencyHistogram();
+        final LatencyHistogram send = new LatencyHistogram();
+        final LatencyHistogram endToEnd = new LatencyHistogram();
+
+        EventStats(String eventType) {
+            this.eventType = eventType;
+        }
+
+        JSONObject toJson() throws JSONException {
+            JSONObject json = new JSONObject();
+            json.put("enqueued", enqueued.get());
+            json.put("dispatched", dispatched.get());
+            json.put("dropped", dropped.get());
+            json.put("serialized", serialization.getCount());
+            json.put("avgSerializationMs", toMillis((long) serialization.getAverageNanos()));
+            json.put("maxSerializationMs", toMillis(serialization.getMaxNanos()));
+            json.put("sent", send.getCount());
+            json.put("avgSendMs", toMillis((long) send.getAverageNanos()));
+            json.put("maxSendMs", toMillis(send.getMaxNanos()));
+
+            JSONObject latency = new JSONObject();
+            latency.put("queueWait", queueWait.toJson());
+            latency.put("serialization", serialization.toJson());
+            latency.put("send", send.toJson());
+            latency.put("endToEnd", endToEnd.toJson());
+            json.put("latency", latency);
+            return json;
+        }
+    }
+}
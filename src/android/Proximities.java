@@ -0,0 +1,67 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package com.unarin.cordova.beacon;
+
+import org.altbeacon.beacon.Beacon;
+
+import java.util.Collection;
+import java.util.IdentityHashMap;
+
+/*
+ * The proximity classes of the beacons of one ranging cycle of a region. The beacons are classified
+ * once, on the library callback which reported the cycle, the filter, proximity events, delta mode and
+ * both wire formats look their class up here, so a classifier keeping state sees every beacon exactly
+ * once per cycle, even if the cycle is coalesced, batched or dropped before it reaches the DOM.
+ */
+final class Proximities {
+
+    /* The classes by the fixed thresholds, there is nothing to remember for these. */
+    static final Proximities BY_DISTANCE = new Proximities(null);
+
+    private final IdentityHashMap<Beacon, Integer> classes;
+
+    private Proximities(IdentityHashMap<Beacon, Integer> classes) {
+        this.classes = classes;
+    }
+
+    static Proximities classify(ProximityClassifier proximityClassifier, String regionId, Collection<Beacon> beacons) {
+        if (proximityClassifier == ProximityClassifier.BY_DISTANCE) {
+            return BY_DISTANCE;
+        }
+        final IdentityHashMap<Beacon, Integer> classes = new IdentityHashMap<Beacon, Integer>(beacons.size());
+        for (Beacon beacon : beacons) {
+            classes.put(beacon, proximityClassifier.classify(regionId, beacon));
+        }
+        return new Proximities(classes);
+    }
+
+    /*
+     * The class of a beacon of the cycle. Beacons which are not part of it, like the last sighting of a
+     * beacon that went missing, are classified by the fixed thresholds.
+     */
+    int of(Beacon beacon) {
+        if (classes != null) {
+            final Integer proximity = classes.get(beacon);
+            if (proximity != null) {
+                return proximity;
+            }
+        }
+        return Proximity.classify(beacon.getDistance());
+    }
+}
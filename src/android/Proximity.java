@@ -0,0 +1,63 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package com.unarin.cordova.beacon;
+
+/*
+ * Proximity classes of a ranged beacon, in the order of their ordinals on the binary wire format.
+ */
+final class Proximity {
+
+    static final int UNKNOWN = 0;
+    static final int IMMEDIATE = 1;
+    static final int NEAR = 2;
+    static final int FAR = 3;
+
+    /* Upper bounds of the immediate and near classes, in metres. */
+    static final double IMMEDIATE_THRESHOLD = 0.5;
+    static final double NEAR_THRESHOLD = 4.0;
+
+    private static final String[] NAMES = {
+            "ProximityUnknown", "ProximityImmediate", "ProximityNear", "ProximityFar"
+    };
+
+    private Proximity() {
+    }
+
+    static int classify(double accuracy) {
+
+        if (accuracy < 0) {
+            return UNKNOWN;
+            // is this correct?  does proximity only show unknown when accuracy is negative?  I have seen cases where it returns unknown when
+            // accuracy is -1;
+        }
+        if (accuracy < IMMEDIATE_THRESHOLD) {
+            return IMMEDIATE;
+        }
+        // forums say 3.0 is the near/far threshold, but it looks to be based on experience that this is 4.0
+        if (accuracy <= NEAR_THRESHOLD) {
+            return NEAR;
+        }
+        // if it is > 4.0 meters, call it far
+        return FAR;
+    }
+
+    static String nameOf(int proximity) {
+        return NAMES[proximity];
+    }
+}
@@ -0,0 +1,108 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package com.unarin.cordova.beacon;
+
+import org.altbeacon.beacon.Beacon;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+
+/*
+ * Follows the proximity class of the beacons ranged in a region from one ranging cycle to the next and
+ * reports the beacons whose class changed, for the didChangeProximity event.
+ * A beacon showing up changes from ProximityUnknown, a beacon which wasn't ranged for MISSING_CYCLES
+ * cycles changes back to ProximityUnknown and is forgotten.
+ *
+ * Not thread safe, it is only used from the ranging callback of the library, which runs on the main thread.
+ */
+class ProximityChangeTracker {
+
+    static final int MISSING_CYCLES = 3;
+
+    private final HashMap<IdentifierKey, State> states = new HashMap<IdentifierKey, State>();
+    private int cycle;
+
+    /*
+     * Feeds the beacons of a ranging cycle, returns the changes in the order the beacons were ranged.
+     */
+    List<Change> update(Collection<Beacon> beacons, Proximities proximities) {
+        cycle++;
+        List<Change> changes = null;
+
+        for (Beacon beacon : beacons) {
+            final IdentifierKey key = IdentifierKey.of(beacon);
+            final int proximity = proximities.of(beacon);
+            State state = states.get(key);
+            if (state == null) {
+                state = new State(Proximity.UNKNOWN);
+                states.put(key, state);
+            }
+            if (state.proximity != proximity) {
+                if (changes == null) {
+                    changes = new ArrayList<Change>();
+                }
+                changes.add(new Change(beacon, proximity, state.proximity));
+                state.proximity = proximity;
+            }
+            state.beacon = beacon;
+            state.lastSeenCycle = cycle;
+        }
+
+        final Iterator<State> iterator = states.values().iterator();
+        while (iterator.hasNext()) {
+            final State state = iterator.next();
+            if (cycle - state.lastSeenCycle >= MISSING_CYCLES) {
+                iterator.remove();
+                if (state.proximity != Proximity.UNKNOWN) {
+                    if (changes == null) {
+                        changes = new ArrayList<Change>();
+                    }
+                    changes.add(new Change(state.beacon, Proximity.UNKNOWN, state.proximity));
+                }
+            }
+        }
+        return changes != null ? changes : Collections.<Change>emptyList();
+    }
+
+    static final class Change {
+        final Beacon beacon;
+        final int proximity;
+        final int previousProximity;
+
+        Change(Beacon beacon, int proximity, int previousProximity) {
+            this.beacon = beacon;
+            this.proximity = proximity;
+            this.previousProximity = previousProximity;
+        }
+    }
+
+    private static final class State {
+        int proximity;
+        Beacon beacon;
+        int lastSeenCycle;
+
+        State(int proximity) {
+            this.proximity = proximity;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package com.unarin.cordova.beacon;
+
+import org.altbeacon.beacon.Beacon;
+
+/*
+ * Decides the proximity class (see Proximity) reported for a beacon ranged in a region.
+ * Implementations may keep state per region and beacon and advance it on every call, so a beacon is
+ * classified exactly once per ranging cycle of a region: Proximities does that and everything else
+ * looks the class up there.
+ */
+interface ProximityClassifier {
+
+    /* Classifies by the fixed thresholds of Proximity.classify, without any state. */
+    ProximityClassifier BY_DISTANCE = new ProximityClassifier() {
+        @Override
+        public int classify(String regionId, Beacon beacon) {
+            return Proximity.classify(beacon.getDistance());
+        }
+    };
+
+    int classify(String regionId, Beacon beacon);
+}
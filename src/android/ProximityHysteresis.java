@@ -0,0 +1,164 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package com.unarin.cordova.beacon;
+
+import org.altbeacon.beacon.Beacon;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Proximity classification with hysteresis, so a beacon hovering around a threshold doesn't flip
+ * between two classes every ranging cycle. Per region and beacon it keeps the reported class, which only
+ * changes if
+ *  - the accuracy left the reported class by more than the band around the threshold, and
+ *  - the new class was observed continuously for at least minDwellMillis.
+ * Every call is an observation, a beacon must be classified once per ranging cycle of a region (see
+ * Proximities). Regions are kept apart since each may smooth the RSSI of a beacon differently.
+ */
+class ProximityHysteresis implements ProximityClassifier {
+
+    static final double DEFAULT_IMMEDIATE_NEAR_BAND = 0.1;
+    static final double DEFAULT_NEAR_FAR_BAND = 0.5;
+    static final long DEFAULT_MIN_DWELL_MILLIS = 2000;
+
+    /* States of beacons which were not classified for this long are forgotten. */
+    private static final long EXPIRATION_MILLIS = 60000;
+
+    private final double immediateNearBand;
+    private final double nearFarBand;
+    private final long minDwellMillis;
+
+    private final HashMap<String, HashMap<IdentifierKey, State>> regions = new HashMap<String, HashMap<IdentifierKey, State>>();
+    private long lastPruneTime = nowMillis();
+
+    ProximityHysteresis(double immediateNearBand, double nearFarBand, long minDwellMillis) {
+        this.immediateNearBand = Math.max(0, immediateNearBand);
+        this.nearFarBand = Math.max(0, nearFarBand);
+        this.minDwellMillis = Math.max(0, minDwellMillis);
+    }
+
+    @Override
+    public int classify(String regionId, Beacon beacon) {
+        return classify(regionId, beacon, nowMillis());
+    }
+
+    synchronized int classify(String regionId, Beacon beacon, long now) {
+        HashMap<IdentifierKey, State> states = regions.get(regionId);
+        if (states == null) {
+            states = new HashMap<IdentifierKey, State>();
+            regions.put(regionId, states);
+        }
+        final IdentifierKey key = IdentifierKey.of(beacon);
+        final double accuracy = beacon.getDistance();
+
+        State state = states.get(key);
+        if (state == null) {
+            final int proximity = Proximity.classify(accuracy);
+            state = new State(proximity);
+            states.put(key, state);
+        } else {
+            final int observed = classifyFrom(state.reported, accuracy);
+            if (observed == state.reported) {
+                state.candidate = observed;
+            } else {
+                if (observed != state.candidate) {
+                    state.candidate = observed;
+                    state.candidateSince = now;
+                }
+                if (now - state.candidateSince >= minDwellMillis) {
+                    state.reported = observed;
+                }
+            }
+        }
+        state.lastSeen = now;
+
+        if (now - lastPruneTime >= EXPIRATION_MILLIS) {
+            prune(now);
+        }
+        return state.reported;
+    }
+
+    /*
+     * The class of the accuracy, with the bounds of the current class widened by the bands.
+     */
+    private int classifyFrom(int current, double accuracy) {
+        if (accuracy >= 0) {
+            switch (current) {
+                case Proximity.IMMEDIATE:
+                    if (accuracy < Proximity.IMMEDIATE_THRESHOLD + immediateNearBand) {
+                        return current;
+                    }
+                    break;
+                case Proximity.NEAR:
+                    if (accuracy >= Proximity.IMMEDIATE_THRESHOLD - immediateNearBand
+                            && accuracy <= Proximity.NEAR_THRESHOLD + nearFarBand) {
+                        return current;
+                    }
+                    break;
+                case Proximity.FAR:
+                    if (accuracy > Proximity.NEAR_THRESHOLD - nearFarBand) {
+                        return current;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        return Proximity.classify(accuracy);
+    }
+
+    /*
+     * Forgets the beacons which were not seen for a while, and the regions left without any, which
+     * includes stopped regions.
+     */
+    private void prune(long now) {
+        lastPruneTime = now;
+        final Iterator<HashMap<IdentifierKey, State>> regionIterator = regions.values().iterator();
+        while (regionIterator.hasNext()) {
+            final HashMap<IdentifierKey, State> states = regionIterator.next();
+            final Iterator<State> iterator = states.values().iterator();
+            while (iterator.hasNext()) {
+                if (now - iterator.next().lastSeen >= EXPIRATION_MILLIS) {
+                    iterator.remove();
+                }
+            }
+            if (states.isEmpty()) {
+                regionIterator.remove();
+            }
+        }
+    }
+
+    private static long nowMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+    private static final class State {
+        int reported;
+        int candidate;
+        long candidateSince;
+        long lastSeen;
+
+        State(int proximity) {
+            this.reported = proximity;
+            this.candidate = proximity;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package com.unarin.cordova.beacon;
+
+import org.altbeacon.beacon.Beacon;
+import org.altbeacon.beacon.Identifier;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+
+/*
+ * Remembers what was last sent to the DOM for a ranged region, so that a ranging cycle only has to
+ * report the beacons which appeared, disappeared or moved noticeably since then.
+ * Every keyframeInterval cycles the full list of beacons is reported again.
+ *
+ * Not thread safe, it is only used from the DOM event queue.
+ */
+class RangingDeltaTracker {
+
+    static final int DEFAULT_RSSI_THRESHOLD = 3;
+    static final double DEFAULT_ACCURACY_THRESHOLD = 0.5;
+    static final int DEFAULT_KEYFRAME_INTERVAL = 10;
+
+    private final int rssiThreshold;
+    private final double accuracyThreshold;
+    private final int keyframeInterval;
+
+    private final HashMap<IdentifierKey, BeaconState> lastSent = new HashMap<IdentifierKey, BeaconState>();
+    private int cycle;
+    private int cyclesSinceKeyframe;
+    private boolean keyframe;
+
+    RangingDeltaTracker(int rssiThreshold, double accuracyThreshold, int keyframeInterval) {
+        this.rssiThreshold = rssiThreshold;
+        this.accuracyThreshold = accuracyThreshold;
+        this.keyframeInterval = Math.max(1, keyframeInterval);
+        // Forces the first cycle to be a keyframe.
+        this.cyclesSinceKeyframe = this.keyframeInterval;
+    }
+
+    /*
+     * Reads the thresholds from the 'delta' ranging option, missing values fall back to the defaults.
+     */
+    static RangingDeltaTracker fromJson(JSONObject json) {
+        if (json == null) {
+            json = new JSONObject();
+        }
+        return new RangingDeltaTracker(
+                json.optInt("rssiThreshold", DEFAULT_RSSI_THRESHOLD),
+                json.optDouble("accuracyThreshold", DEFAULT_ACCURACY_THRESHOLD),
+                json.optInt("keyframeInterval", DEFAULT_KEYFRAME_INTERVAL));
+    }
+
+    /*
+     * Starts a ranging cycle. Returns true if the cycle is a keyframe and every beacon has to be sent.
+     */
+    public boolean beginCycle() {
+        cycle++;
+        keyframe = cyclesSinceKeyframe >= keyframeInterval;
+        cyclesSinceKeyframe = keyframe ? 1 : cyclesSinceKeyframe + 1;
+        return keyframe;
+    }
+
+    /*
+     * Records a beacon of the current cycle. Returns true if it has to be sent to the DOM because it is
+     * new, its proximity class changed or its accuracy or RSSI moved beyond the thresholds.
+     */
+    public boolean offer(Beacon beacon, String proximity) {
+        final IdentifierKey key = IdentifierKey.of(beacon);
+        BeaconState state = lastSent.get(key);
+
+        if (state == null) {
+            state = new BeaconState(beacon.getId1(), beacon.getId2(), beacon.getId3());
+            lastSent.put(key, state);
+        } else if (!keyframe && !state.hasMoved(beacon, proximity, rssiThreshold, accuracyThreshold)) {
+            state.lastSeenCycle = cycle;
+            return false;
+        }
+
+        state.lastSeenCycle = cycle;
+        state.proximity = proximity;
+        state.rssi = beacon.getRssi();
+        state.accuracy = beacon.getDistance();
+        return true;
+    }
+
+    /*
+     * Finishes the current cycle and returns the beacons which were sent before but were not ranged in it.
+     */
+    public List<BeaconState> endCycle() {
+        List<BeaconState> removed = null;
+        final Iterator<BeaconState> iterator = lastSent.values().iterator();
+        while (iterator.hasNext()) {
+            final BeaconState state = iterator.next();
+            if (state.lastSeenCycle != cycle) {
+                iterator.remove();
+                if (removed == null) {
+                    removed = new ArrayList<BeaconState>();
+                }
+                removed.add(state);
+            }
+        }
+        return removed != null ? removed : Collections.<BeaconState>emptyList();
+    }
+
+    static final class BeaconState {
+        final Identifier uuid;
+        final Identifier major;
+        final Identifier minor;
+        String proximity;
+        int rssi;
+        double accuracy;
+        int lastSeenCycle;
+
+        BeaconState(Identifier uuid, Identifier major, Identifier minor) {
+            this.uuid = uuid;
+            this.major = major;
+            this.minor = minor;
+        }
+
+        boolean hasMoved(Beacon beacon, String proximity, int rssiThreshold, double accuracyThreshold) {
+            return !proximity.equals(this.proximity)
+                    || Math.abs(beacon.getRssi() - rssi) >= rssiThreshold
+                    || Math.abs(beacon.getDistance() - accuracy) >= accuracyThreshold;
+        }
+    }
+}
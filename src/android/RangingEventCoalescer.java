@@ -0,0 +1,132 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package com.unarin.cordova.beacon;
+
+import org.altbeacon.beacon.Beacon;
+import org.altbeacon.beacon.Region;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Keeps only the newest ranging snapshot per region while it waits to be dispatched to the DOM.
+ * A region has at most one pending dispatch in the event queue, newer snapshots replace the
+ * beacons it will deliver instead of queueing another event behind it.
+ * Frames of the RangingFrameBatcher are coalesced the same way: while a frame waits to be dispatched,
+ * later frames are merged into it, so a paused event queue holds one frame with the newest snapshots.
+ */
+class RangingEventCoalescer {
+
+    private final ConcurrentHashMap<String, Snapshot> pending = new ConcurrentHashMap<String, Snapshot>();
+    private LinkedHashMap<String, Snapshot> pendingFrame; // guarded by this, null while no frame is pending
+
+    /*
+     * Stores the snapshot as the latest one for the region.
+     * Returns true if there was no pending snapshot for the region, meaning the caller has to
+     * schedule a dispatch which will later collect it via take().
+     */
+    public boolean offer(Snapshot snapshot) {
+        final String key = keyOf(snapshot.region);
+        while (true) {
+            final Snapshot older = pending.get(key);
+            if (older == null) {
+                if (pending.putIfAbsent(key, snapshot) == null) {
+                    return true;
+                }
+            } else if (pending.replace(key, older, snapshot.replacing(older))) {
+                return false;
+            }
+        }
+    }
+
+    /*
+     * Removes and returns the latest snapshot of the region, or null if it was already taken.
+     */
+    public Snapshot take(Region region) {
+        return pending.remove(keyOf(region));
+    }
+
+    /*
+     * Merges a frame into the pending one, newer snapshots of a region replace its older one. Returns true if
+     * there was no pending frame, meaning the caller has to schedule a dispatch which will later collect it
+     * via takeFrame(). The coalescer owns the frame from now on.
+     */
+    public synchronized boolean offerFrame(LinkedHashMap<String, Snapshot> frame) {
+        if (pendingFrame == null) {
+            pendingFrame = frame;
+            return true;
+        }
+        for (Snapshot snapshot : frame.values()) {
+            final String key = keyOf(snapshot.region);
+            final Snapshot older = pendingFrame.get(key);
+            pendingFrame.put(key, older != null ? snapshot.replacing(older) : snapshot);
+        }
+        return false;
+    }
+
+    /*
+     * Removes and returns the pending frame, or null if it was already taken.
+     */
+    public synchronized LinkedHashMap<String, Snapshot> takeFrame() {
+        final LinkedHashMap<String, Snapshot> frame = pendingFrame;
+        pendingFrame = null;
+        return frame;
+    }
+
+    private static String keyOf(Region region) {
+        return region.getUniqueId();
+    }
+
+    /*
+     * A ranging cycle of a region as the DOM may see it: the beacons which passed the filter, the K nearest
+     * in nearest mode, and their proximity classes. All of it is decided when the library reports the cycle,
+     * so the classifier and nearest mode see every cycle once and at the time it was ranged, however late the
+     * snapshot is dispatched, or whether it is at all.
+     */
+    static final class Snapshot {
+        final Region region;
+        final Collection<Beacon> beacons;
+        final Proximities proximities;
+        final boolean nearest;
+        final boolean rankingChanged; // since the last snapshot which was dispatched
+        final long ingressNanos;
+
+        Snapshot(Region region, Collection<Beacon> beacons, Proximities proximities, boolean nearest,
+                 boolean rankingChanged, long ingressNanos) {
+            this.region = region;
+            this.beacons = beacons;
+            this.proximities = proximities;
+            this.nearest = nearest;
+            this.rankingChanged = rankingChanged;
+            this.ingressNanos = ingressNanos;
+        }
+
+        /*
+         * This snapshot in place of an older one which won't be dispatched, keeping a ranking change the
+         * DOM would otherwise never hear of.
+         */
+        Snapshot replacing(Snapshot older) {
+            if (rankingChanged || !older.rankingChanged) {
+                return this;
+            }
+            return new Snapshot(region, beacons, proximities, nearest, true, ingressNanos);
+        }
+    }
+}
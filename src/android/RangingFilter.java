@@ -0,0 +1,124 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package com.unarin.cordova.beacon;
+
+import org.altbeacon.beacon.Beacon;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/*
+ * Drops the beacons of a ranging cycle the DOM is not interested in before anything gets serialized.
+ * Configured by the 'filter' ranging option, every criterion is optional:
+ * minRssi, maxAccuracy, proximities (names as in Proximity.nameOf, like ProximityNear) and maxBeacons, which keeps the nearest ones.
+ *
+ * Immutable and therefore safe to share between the ranging and the event queue threads.
+ */
+final class RangingFilter {
+
+    private static final int ALL_PROXIMITIES = (1 << Proximity.UNKNOWN) | (1 << Proximity.IMMEDIATE)
+            | (1 << Proximity.NEAR) | (1 << Proximity.FAR);
+
+    /* Beacons with an unknown distance (negative accuracy) are sorted after all others. */
+    private static final Comparator<Beacon> NEAREST_FIRST = new Comparator<Beacon>() {
+        @Override
+        public int compare(Beacon lhs, Beacon rhs) {
+            return Double.compare(sortKeyOf(lhs.getDistance()), sortKeyOf(rhs.getDistance()));
+        }
+    };
+
+    private final int minRssi;
+    private final double maxAccuracy;
+    private final int proximityMask;
+    private final int maxBeacons;
+
+    RangingFilter(int minRssi, double maxAccuracy, int proximityMask, int maxBeacons) {
+        this.minRssi = minRssi;
+        this.maxAccuracy = maxAccuracy;
+        this.proximityMask = proximityMask;
+        this.maxBeacons = maxBeacons;
+    }
+
+    /*
+     * Reads the 'filter' ranging option. Unknown proximity names are rejected so typos don't silently
+     * filter out every beacon.
+     */
+    static RangingFilter fromJson(JSONObject json) {
+        int proximityMask = ALL_PROXIMITIES;
+        final JSONArray proximities = json.optJSONArray("proximities");
+        if (proximities != null) {
+            proximityMask = 0;
+            for (int i = 0; i < proximities.length(); i++) {
+                proximityMask |= 1 << proximityOf(proximities.optString(i));
+            }
+        }
+        return new RangingFilter(
+                json.optInt("minRssi", Integer.MIN_VALUE),
+                json.optDouble("maxAccuracy", Double.MAX_VALUE),
+                proximityMask,
+                Math.max(0, json.optInt("maxBeacons", 0)));
+    }
+
+    /*
+     * Returns the beacons which pass the filter, the nearest ones first if maxBeacons had to cut the list.
+     */
+    List<Beacon> apply(Collection<Beacon> beacons, Proximities proximities) {
+        final List<Beacon> accepted = new ArrayList<Beacon>(beacons.size());
+        for (Beacon beacon : beacons) {
+            if (accepts(beacon, proximities)) {
+                accepted.add(beacon);
+            }
+        }
+
+        if (maxBeacons > 0 && accepted.size() > maxBeacons) {
+            Collections.sort(accepted, NEAREST_FIRST);
+            return new ArrayList<Beacon>(accepted.subList(0, maxBeacons));
+        }
+        return accepted;
+    }
+
+    boolean accepts(Beacon beacon, Proximities proximities) {
+        if (beacon.getRssi() < minRssi) {
+            return false;
+        }
+        final double accuracy = beacon.getDistance();
+        if (accuracy > maxAccuracy) {
+            return false;
+        }
+        return (proximityMask & (1 << proximities.of(beacon))) != 0;
+    }
+
+    private static int proximityOf(String name) {
+        for (int proximity = Proximity.UNKNOWN; proximity <= Proximity.FAR; proximity++) {
+            if (Proximity.nameOf(proximity).equals(name)) {
+                return proximity;
+            }
+        }
+        throw new IllegalArgumentException("Unknown proximity in ranging filter: " + name);
+    }
+
+    private static double sortKeyOf(double accuracy) {
+        return accuracy < 0 ? Double.MAX_VALUE : accuracy;
+    }
+}
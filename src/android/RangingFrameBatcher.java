@@ -0,0 +1,94 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package com.unarin.cordova.beacon;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.LinkedHashMap;
+
+/*
+ * Collects the ranging results the library reports region by region at the end of a scan cycle
+ * and hands them over as a single frame, keyed by region identifier.
+ * A frame is flushed when the batch window elapses after its first result, or earlier if a region
+ * which is already part of it is reported again, since that means the next cycle has started.
+ */
+class RangingFrameBatcher {
+
+    interface FrameListener {
+        void onFrame(LinkedHashMap<String, RangingEventCoalescer.Snapshot> frame);
+    }
+
+    private final long windowMillis;
+    private final FrameListener listener;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private LinkedHashMap<String, RangingEventCoalescer.Snapshot> collecting =
+            new LinkedHashMap<String, RangingEventCoalescer.Snapshot>();
+
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    RangingFrameBatcher(long windowMillis, FrameListener listener) {
+        this.windowMillis = windowMillis;
+        this.listener = listener;
+    }
+
+    public void add(RangingEventCoalescer.Snapshot snapshot) {
+        final String regionId = snapshot.region.getUniqueId();
+        final LinkedHashMap<String, RangingEventCoalescer.Snapshot> completed;
+        synchronized (this) {
+            completed = collecting.containsKey(regionId) ? takeFrame() : null;
+            if (collecting.isEmpty()) {
+                handler.postDelayed(flushTask, windowMillis);
+            }
+            collecting.put(regionId, snapshot);
+        }
+        if (completed != null) {
+            listener.onFrame(completed);
+        }
+    }
+
+    public void flush() {
+        final LinkedHashMap<String, RangingEventCoalescer.Snapshot> frame;
+        synchronized (this) {
+            frame = takeFrame();
+        }
+        if (frame != null) {
+            listener.onFrame(frame);
+        }
+    }
+
+    /*
+     * Detaches the frame being collected, or returns null if it is empty. The listener is called with
+     * the detached frame outside the lock, so a slow listener doesn't hold up the next cycle's results.
+     */
+    private LinkedHashMap<String, RangingEventCoalescer.Snapshot> takeFrame() {
+        handler.removeCallbacks(flushTask);
+        if (collecting.isEmpty()) {
+            return null;
+        }
+        final LinkedHashMap<String, RangingEventCoalescer.Snapshot> frame = collecting;
+        collecting = new LinkedHashMap<String, RangingEventCoalescer.Snapshot>();
+        return frame;
+    }
+}
@@ -0,0 +1,63 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package com.unarin.cordova.beacon;
+
+import org.altbeacon.beacon.Beacon;
+import org.altbeacon.beacon.Region;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/*
+ * The beacons of a ranging cycle which are going to be sent to the DOM for a region.
+ */
+final class RangingResult {
+
+    final Region region;
+    final Collection<Beacon> beacons;
+    final Proximities proximities;
+
+    /* true if the region is ranged in delta mode, only then keyframe and removed are meaningful */
+    final boolean delta;
+    final boolean keyframe;
+    final List<RangingDeltaTracker.BeaconState> removed;
+
+    /* true if the region is ranged in nearest mode, only then rankingChanged is meaningful */
+    final boolean nearest;
+    final boolean rankingChanged;
+
+    RangingResult(Region region, Collection<Beacon> beacons, Proximities proximities) {
+        this(region, beacons, proximities, false, true, Collections.<RangingDeltaTracker.BeaconState>emptyList(),
+                false, false);
+    }
+
+    RangingResult(Region region, Collection<Beacon> beacons, Proximities proximities, boolean delta,
+                  boolean keyframe, List<RangingDeltaTracker.BeaconState> removed, boolean nearest,
+                  boolean rankingChanged) {
+        this.region = region;
+        this.beacons = beacons;
+        this.proximities = proximities;
+        this.delta = delta;
+        this.keyframe = keyframe;
+        this.removed = removed;
+        this.nearest = nearest;
+        this.rankingChanged = rankingChanged;
+    }
+}
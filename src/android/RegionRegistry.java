@@ -0,0 +1,212 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package com.unarin.cordova.beacon;
+
+import org.altbeacon.beacon.Beacon;
+import org.altbeacon.beacon.Identifier;
+import org.altbeacon.beacon.Region;
+import org.json.JSONObject;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * The regions which are being monitored or ranged, indexed by their identifier and by their
+ * (uuid, major, minor) identifiers, along with their serialized forms, so that the events of these
+ * regions don't have to serialize the same region over and over again.
+ *
+ * Entries are registered when the monitoring or ranging of a region starts and dropped once neither
+ * is active anymore. Lookups are lock free and take constant time, including finding the regions a
+ * beacon belongs to. The cached JSON objects are shared, they must not be modified.
+ */
+class RegionRegistry {
+
+    static final int MONITORED = 1;
+    static final int RANGED = 2;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final Entry[] NO_ENTRIES = new Entry[0];
+
+    private final ConcurrentHashMap<String, Entry> byUniqueId = new ConcurrentHashMap<String, Entry>();
+    // Regions leaving an identifier empty are found under the null identifier, a beacon is looked up with
+    // every combination of its identifiers and null.
+    private final ConcurrentHashMap<IdentifierKey, Entry[]> byIdentifiers = new ConcurrentHashMap<IdentifierKey, Entry[]>();
+
+    /*
+     * Registers the region for the usage, keeping its other usage. Throws if the identifier is in use by
+     * the other usage with different beacon identifiers, see checkRegistrable.
+     */
+    public synchronized void register(Region region, int usage, JSONObject json) {
+        checkRegistrable(region, usage);
+        final Entry existing = get(region);
+        final int usages = existing != null ? existing.usages | usage : usage;
+        put(new Entry(region, json, json.toString().getBytes(UTF_8), usages));
+    }
+
+    /*
+     * Throws an IllegalArgumentException if registering the region for the usage would conflict with the
+     * registered region of the same identifier: one identifier can't be monitored for some beacon
+     * identifiers and ranged for others. Registering it again for the same usage alone replaces the region,
+     * like starting it again does in the library. Called before the region is started.
+     */
+    public void checkRegistrable(Region region, int usage) {
+        final Entry existing = byUniqueId.get(region.getUniqueId());
+        if (existing != null && (existing.usages & ~usage) != 0 && get(region) == null) {
+            throw new IllegalArgumentException("Region '" + region.getUniqueId()
+                    + "' is already " + (existing.isMonitored() ? "monitored" : "ranged")
+                    + " with different beacon identifiers");
+        }
+    }
+
+    public synchronized void unregister(Region region, int usage) {
+        final Entry existing = byUniqueId.get(region.getUniqueId());
+        if (existing == null) {
+            return;
+        }
+        final int usages = existing.usages & ~usage;
+        if (usages == 0) {
+            remove(existing);
+        } else {
+            put(new Entry(existing.region, existing.json, existing.utf8, usages));
+        }
+    }
+
+    /*
+     * Returns the entry of the region, or null if it isn't registered or the registered region with the
+     * same identifier has different beacon identifiers.
+     */
+    public Entry get(Region region) {
+        final Entry entry = byUniqueId.get(region.getUniqueId());
+        if (entry == null) {
+            return null;
+        }
+        if (entry.region != region && !IdentifierKey.of(entry.region).equals(IdentifierKey.of(region))) {
+            return null;
+        }
+        return entry;
+    }
+
+    public Entry get(String uniqueId) {
+        return uniqueId != null ? byUniqueId.get(uniqueId) : null;
+    }
+
+    /*
+     * Returns the registered regions matching the beacon, regions leaving an identifier empty match any
+     * value of it. Takes at most eight hash lookups, however many regions are registered.
+     */
+    public List<Entry> regionsContaining(Beacon beacon) {
+        final Identifier uuid = beacon.getId1();
+        final Identifier major = beacon.getId2();
+        final Identifier minor = beacon.getId3();
+
+        List<Entry> matches = null;
+        for (int wildcards = 0; wildcards < 8; wildcards++) {
+            if (((wildcards & 1) == 0 && uuid == null)
+                    || ((wildcards & 2) == 0 && major == null)
+                    || ((wildcards & 4) == 0 && minor == null)) {
+                continue; // same key as the wildcard variant
+            }
+            final Entry[] entries = byIdentifiers.get(new IdentifierKey(
+                    (wildcards & 1) == 0 ? uuid : null,
+                    (wildcards & 2) == 0 ? major : null,
+                    (wildcards & 4) == 0 ? minor : null));
+            if (entries == null) {
+                continue;
+            }
+            if (matches == null) {
+                matches = new ArrayList<Entry>(entries.length);
+            }
+            Collections.addAll(matches, entries);
+        }
+        return matches != null ? matches : Collections.<Entry>emptyList();
+    }
+
+    public List<Entry> entries(int usage) {
+        final List<Entry> entries = new ArrayList<Entry>(byUniqueId.size());
+        for (Entry entry : byUniqueId.values()) {
+            if ((entry.usages & usage) != 0) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    private void put(Entry entry) {
+        final Entry replaced = byUniqueId.put(entry.region.getUniqueId(), entry);
+        if (replaced != null) {
+            removeFromIdentifierIndex(replaced);
+        }
+        final IdentifierKey key = IdentifierKey.of(entry.region);
+        final Entry[] existing = byIdentifiers.get(key);
+        final Entry[] updated;
+        if (existing == null) {
+            updated = new Entry[]{entry};
+        } else {
+            updated = new Entry[existing.length + 1];
+            System.arraycopy(existing, 0, updated, 0, existing.length);
+            updated[existing.length] = entry;
+        }
+        byIdentifiers.put(key, updated);
+    }
+
+    private void remove(Entry entry) {
+        byUniqueId.remove(entry.region.getUniqueId());
+        removeFromIdentifierIndex(entry);
+    }
+
+    private void removeFromIdentifierIndex(Entry entry) {
+        final IdentifierKey key = IdentifierKey.of(entry.region);
+        final Entry[] existing = byIdentifiers.get(key);
+        if (existing == null) {
+            return;
+        }
+        final List<Entry> remaining = new ArrayList<Entry>(existing.length);
+        for (Entry candidate : existing) {
+            if (candidate != entry) {
+                remaining.add(candidate);
+            }
+        }
+        if (remaining.isEmpty()) {
+            byIdentifiers.remove(key);
+        } else {
+            byIdentifiers.put(key, remaining.toArray(NO_ENTRIES));
+        }
+    }
+
+    static final class Entry {
+        final Region region;
+        final JSONObject json;
+        final byte[] utf8;
+        final int usages;
+
+        Entry(Region region, JSONObject json, byte[] utf8, int usages) {
+            this.region = region;
+            this.json = json;
+            this.utf8 = utf8;
+            this.usages = usages;
+        }
+
+        boolean isMonitored() {
+            return (usages & MONITORED) != 0;
+        }
+    }
+}
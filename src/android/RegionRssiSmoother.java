@@ -0,0 +1,180 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package com.unarin.cordova.beacon;
+
+import android.os.SystemClock;
+
+import org.altbeacon.beacon.Beacon;
+import org.altbeacon.beacon.service.RssiFilter;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+
+/*
+ * RSSI smoothing of the beacons ranged in one region, configured by the 'rssiFilter' ranging option.
+ * The filter of the library and its sample expiration are global, this runs on top of it with the
+ * parameters of the region: every ranging cycle feeds the latest raw RSSI of a beacon into the filter
+ * the region keeps for it, and the beacon is reported with the distance derived from the filtered RSSI.
+ * The beacons of the library are copied, not modified, since other regions share them.
+ *
+ * Not thread safe, it is only used from the ranging callback of the library, before the cycle is queued.
+ */
+class RegionRssiSmoother {
+
+    static final String TYPE_NONE = "none";
+    static final String TYPE_RUNNING_AVERAGE = "running-average";
+    static final String TYPE_KALMAN = "kalman";
+
+    static final long DEFAULT_SAMPLE_EXPIRATION_MILLISECONDS = 20000;
+
+    private final String type;
+    private final long sampleExpirationMilliseconds;
+    private final double processNoise;
+    private final double measurementNoise;
+
+    private final HashMap<IdentifierKey, RssiFilter> filters = new HashMap<IdentifierKey, RssiFilter>();
+
+    RegionRssiSmoother(String type, long sampleExpirationMilliseconds, double processNoise, double measurementNoise) {
+        this.type = type;
+        this.sampleExpirationMilliseconds = Math.max(0, sampleExpirationMilliseconds);
+        this.processNoise = processNoise;
+        this.measurementNoise = measurementNoise;
+    }
+
+    /*
+     * Reads the 'rssiFilter' ranging option: 'type' (none, running-average or kalman, the default),
+     * 'sampleExpirationMilliseconds' and for kalman 'processNoise' and 'measurementNoise'.
+     */
+    static RegionRssiSmoother fromJson(JSONObject json) {
+        final String type = json.optString("type", TYPE_KALMAN).trim().toLowerCase(Locale.US);
+        if (!TYPE_NONE.equals(type) && !TYPE_RUNNING_AVERAGE.equals(type) && !TYPE_KALMAN.equals(type)) {
+            throw new IllegalArgumentException("Unsupported RSSI filter: " + type);
+        }
+        return new RegionRssiSmoother(type,
+                json.optLong("sampleExpirationMilliseconds", DEFAULT_SAMPLE_EXPIRATION_MILLISECONDS),
+                json.optDouble("processNoise", KalmanRssiFilter.DEFAULT_PROCESS_NOISE),
+                json.optDouble("measurementNoise", KalmanRssiFilter.DEFAULT_MEASUREMENT_NOISE));
+    }
+
+    /*
+     * Returns copies of the beacons carrying the RSSI filtered with the parameters of the region.
+     * Filters of beacons which were not seen within the sample expiration are dropped.
+     */
+    List<Beacon> apply(Collection<Beacon> beacons) {
+        final List<Beacon> smoothed = new ArrayList<Beacon>(beacons.size());
+        final boolean unfiltered = TYPE_NONE.equals(type);
+        for (Beacon beacon : beacons) {
+            double rssi = beacon.getRssi();
+            if (!unfiltered) {
+                final IdentifierKey key = IdentifierKey.of(beacon);
+                RssiFilter filter = filters.get(key);
+                if (filter == null) {
+                    filter = createFilter();
+                    filters.put(key, filter);
+                }
+                filter.addMeasurement(beacon.getRssi());
+                rssi = filter.calculateRssi();
+            }
+
+            final Beacon copy = new Beacon.Builder().copyBeaconFields(beacon).build();
+            // Resets the cached distance, getDistance() derives it from this RSSI.
+            copy.setRunningAverageRssi(rssi);
+            smoothed.add(copy);
+        }
+
+        final Iterator<RssiFilter> iterator = filters.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().noMeasurementsAvailable()) {
+                iterator.remove();
+            }
+        }
+        return smoothed;
+    }
+
+    private RssiFilter createFilter() {
+        if (TYPE_KALMAN.equals(type)) {
+            return new KalmanRssiFilter(processNoise, measurementNoise, sampleExpirationMilliseconds);
+        }
+        return new WindowedAverageRssiFilter(sampleExpirationMilliseconds);
+    }
+
+    /*
+     * Mean of the samples within the window, kept in a fixed ring of primitives.
+     */
+    static final class WindowedAverageRssiFilter implements RssiFilter {
+
+        private static final int MAX_SAMPLES = 32;
+
+        private final long windowMillis;
+        private final int[] rssi = new int[MAX_SAMPLES];
+        private final long[] time = new long[MAX_SAMPLES];
+        private int head;
+        private int count;
+
+        WindowedAverageRssiFilter(long windowMillis) {
+            this.windowMillis = windowMillis;
+        }
+
+        @Override
+        public void addMeasurement(Integer value) {
+            rssi[head] = value;
+            time[head] = SystemClock.elapsedRealtime();
+            head = (head + 1) % MAX_SAMPLES;
+            count = Math.min(MAX_SAMPLES, count + 1);
+        }
+
+        @Override
+        public boolean noMeasurementsAvailable() {
+            return count == 0 || SystemClock.elapsedRealtime() - time[newest()] > windowMillis;
+        }
+
+        @Override
+        public double calculateRssi() {
+            if (count == 0) {
+                return 0;
+            }
+            final long now = SystemClock.elapsedRealtime();
+            long sum = rssi[newest()];
+            int samples = 1;
+            for (int i = 1; i < count; i++) {
+                final int index = (head - 1 - i + MAX_SAMPLES) % MAX_SAMPLES;
+                if (now - time[index] > windowMillis) {
+                    break;
+                }
+                sum += rssi[index];
+                samples++;
+            }
+            return (double) sum / samples;
+        }
+
+        @Override
+        public int getMeasurementCount() {
+            return count;
+        }
+
+        private int newest() {
+            return (head - 1 + MAX_SAMPLES) % MAX_SAMPLES;
+        }
+    }
+}
@@ -0,0 +1,281 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package com.unarin.cordova.beacon;
+
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Keeps the monitored and ranged regions in a small file, so they can be started again right after the
+ * process starts instead of waiting for the DOM to load and start them. The file is
+ *
+ *   u8 version, u16 region count, then per region:
+ *   u8 usages (RegionRegistry.MONITORED | RegionRegistry.RANGED), region identifier, region JSON,
+ *   monitoring options JSON, ranging options JSON
+ *
+ * with the strings written by DataOutputStream.writeUTF, an empty string standing for no options.
+ * The file is read on a background thread, which is also the thread writing it. Changes rewrite the whole file on a background thread, several changes in a row are written once. It
+ * is written to a temporary file which is renamed over the previous one, a crash never leaves half a file.
+ */
+class RegionStore {
+
+    static final int VERSION = 1;
+
+    private static final String TAG = "com.unarin.beacon";
+    private static final long CLOSE_TIMEOUT_MILLIS = 1000;
+
+    interface RestoreListener {
+        void onRestored(List<StoredRegion> regions);
+    }
+
+    private final File file;
+    private final LinkedHashMap<String, StoredRegion> regions = new LinkedHashMap<String, StoredRegion>();
+    private final ExecutorService writeExecutor;
+
+    private boolean writeScheduled;
+
+    private RegionStore(File file) {
+        this.file = file;
+
+        writeExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                return new Thread(runnable, "LocationManager-regionstore");
+            }
+        });
+    }
+
+    /*
+     * Opens the store and reads the regions which were active when the previous process wrote it last on
+     * the writer thread, handing them to the listener there, in the order they were started. An unreadable
+     * or unknown version of the file is ignored, it is replaced by the next change.
+     */
+    static RegionStore open(File file, final RestoreListener listener) {
+        final RegionStore store = new RegionStore(file);
+        store.writeExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                store.restore(listener);
+            }
+        });
+        return store;
+    }
+
+    private void restore(RestoreListener listener) {
+        final LinkedHashMap<String, StoredRegion> stored = new LinkedHashMap<String, StoredRegion>();
+        if (file.exists()) {
+            try {
+                read(file, stored);
+            } catch (IOException e) {
+                Log.w(TAG, "Ignoring the unreadable region store " + file + ": " + e.getMessage());
+                stored.clear();
+            }
+        }
+
+        final List<StoredRegion> restored = new ArrayList<StoredRegion>(stored.size());
+        synchronized (this) {
+            for (StoredRegion region : stored.values()) {
+                // A region started in the meantime is newer than the file.
+                if (!regions.containsKey(region.uniqueId)) {
+                    regions.put(region.uniqueId, region);
+                    restored.add(region);
+                }
+            }
+        }
+        listener.onRestored(restored);
+    }
+
+    synchronized void put(String regionId, int usage, JSONObject region, JSONObject options) {
+        final StoredRegion existing = regions.get(regionId);
+        final String optionsJson = options != null ? options.toString() : "";
+        final StoredRegion updated = new StoredRegion(
+                existing != null ? existing.usages | usage : usage, regionId,
+                region.toString(),
+                usage == RegionRegistry.MONITORED ? optionsJson : existing != null ? existing.monitoringOptions : "",
+                usage == RegionRegistry.RANGED ? optionsJson : existing != null ? existing.rangingOptions : "");
+        if (updated.equals(existing)) {
+            return;
+        }
+        regions.put(regionId, updated);
+        scheduleWrite();
+    }
+
+    synchronized void remove(String regionId, int usage) {
+        final StoredRegion existing = regions.get(regionId);
+        if (existing == null || (existing.usages & usage) == 0) {
+            return;
+        }
+        final int usages = existing.usages & ~usage;
+        if (usages == 0) {
+            regions.remove(regionId);
+        } else {
+            regions.put(regionId, new StoredRegion(usages, regionId, existing.region,
+                    usage == RegionRegistry.MONITORED ? "" : existing.monitoringOptions,
+                    usage == RegionRegistry.RANGED ? "" : existing.rangingOptions));
+        }
+        scheduleWrite();
+    }
+
+    /*
+     * Waits briefly for a pending write before the writer thread goes away.
+     */
+    void close() {
+        writeExecutor.shutdown();
+        try {
+            writeExecutor.awaitTermination(CLOSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void scheduleWrite() {
+        if (writeScheduled || writeExecutor.isShutdown()) {
+            return;
+        }
+        writeScheduled = true;
+        writeExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                write();
+            }
+        });
+    }
+
+    private void write() {
+        final List<StoredRegion> snapshot;
+        synchronized (this) {
+            writeScheduled = false;
+            snapshot = new ArrayList<StoredRegion>(regions.values());
+        }
+
+        final File temporary = new File(file.getPath() + ".tmp");
+        try {
+            final FileOutputStream stream = new FileOutputStream(temporary);
+            try {
+                final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(stream));
+                output.writeByte(VERSION);
+                output.writeShort(snapshot.size());
+                for (StoredRegion region : snapshot) {
+                    output.writeByte(region.usages);
+                    output.writeUTF(region.uniqueId);
+                    output.writeUTF(region.region);
+                    output.writeUTF(region.monitoringOptions);
+                    output.writeUTF(region.rangingOptions);
+                }
+                output.flush();
+                stream.getFD().sync();
+            } finally {
+                stream.close();
+            }
+            if (!temporary.renameTo(file)) {
+                throw new IOException("Unable to replace " + file);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write the region store: " + e.getMessage());
+        }
+    }
+
+    private static void read(File file, LinkedHashMap<String, StoredRegion> regions) throws IOException {
+        final DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            final int version = input.readUnsignedByte();
+            if (version != VERSION) {
+                throw new IOException("Unsupported version " + version);
+            }
+            final int count = input.readUnsignedShort();
+            for (int i = 0; i < count; i++) {
+                final StoredRegion region = new StoredRegion(input.readUnsignedByte(),
+                        input.readUTF(), input.readUTF(), input.readUTF(), input.readUTF());
+                regions.put(region.uniqueId, region);
+            }
+        } finally {
+            input.close();
+        }
+    }
+
+    static final class StoredRegion {
+        final int usages;
+        final String uniqueId;
+        final String region;
+        final String monitoringOptions;
+        final String rangingOptions;
+
+        StoredRegion(int usages, String uniqueId, String region, String monitoringOptions, String rangingOptions) {
+            this.usages = usages;
+            this.uniqueId = uniqueId;
+            this.region = region;
+            this.monitoringOptions = monitoringOptions;
+            this.rangingOptions = rangingOptions;
+        }
+
+        boolean isMonitored() {
+            return (usages & RegionRegistry.MONITORED) != 0;
+        }
+
+        boolean isRanged() {
+            return (usages & RegionRegistry.RANGED) != 0;
+        }
+
+        JSONObject getRegion() throws JSONException {
+            return new JSONObject(region);
+        }
+
+        JSONObject getMonitoringOptions() throws JSONException {
+            return monitoringOptions.length() > 0 ? new JSONObject(monitoringOptions) : null;
+        }
+
+        JSONObject getRangingOptions() throws JSONException {
+            return rangingOptions.length() > 0 ? new JSONObject(rangingOptions) : null;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof StoredRegion)) {
+                return false;
+            }
+            final StoredRegion that = (StoredRegion) other;
+            return usages == that.usages && uniqueId.equals(that.uniqueId) && region.equals(that.region)
+                    && monitoringOptions.equals(that.monitoringOptions)
+                    && rangingOptions.equals(that.rangingOptions);
+        }
+
+        @Override
+        public int hashCode() {
+            return region.hashCode() * 31 + usages;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package com.unarin.cordova.beacon;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Locale;
+
+/*
+ * Foreground and background scan timing of the BeaconManager, in milliseconds.
+ * A profile is either one of the presets or a preset (or the current timing) with some periods overridden.
+ */
+final class ScanProfile {
+
+    static final String LOW_LATENCY = "low-latency";
+    static final String BALANCED = "balanced";
+    static final String LOW_POWER = "low-power";
+    static final String CUSTOM = "custom";
+
+    final String name;
+    final long foregroundScanPeriod;
+    final long foregroundBetweenScanPeriod;
+    final long backgroundScanPeriod;
+    final long backgroundBetweenScanPeriod;
+
+    ScanProfile(String name, long foregroundScanPeriod, long foregroundBetweenScanPeriod,
+                long backgroundScanPeriod, long backgroundBetweenScanPeriod) {
+        this.name = name;
+        this.foregroundScanPeriod = foregroundScanPeriod;
+        this.foregroundBetweenScanPeriod = foregroundBetweenScanPeriod;
+        this.backgroundScanPeriod = backgroundScanPeriod;
+        this.backgroundBetweenScanPeriod = backgroundBetweenScanPeriod;
+    }
+
+    static ScanProfile preset(String name) {
+        final String normalized = name != null ? name.trim().toLowerCase(Locale.US) : null;
+        if (LOW_LATENCY.equals(normalized)) {
+            return new ScanProfile(LOW_LATENCY, 1100, 0, 1100, 10000);
+        }
+        if (BALANCED.equals(normalized)) {
+            return new ScanProfile(BALANCED, 1100, 2000, 10000, 60000);
+        }
+        if (LOW_POWER.equals(normalized)) {
+            // The defaults of the library for the background.
+            return new ScanProfile(LOW_POWER, 1100, 10000, 10000, 300000);
+        }
+        throw new IllegalArgumentException("Unsupported scan profile: " + name);
+    }
+
+    /*
+     * Reads the argument of setScanProfile, either the name of a preset or an object with an optional
+     * 'preset' and any of the four periods. Periods which are not given are taken from the preset, or
+     * from the current profile if there is no preset.
+     */
+    static ScanProfile fromJson(Object json, ScanProfile current) {
+        if (json instanceof String) {
+            return preset((String) json);
+        }
+        if (!(json instanceof JSONObject)) {
+            throw new IllegalArgumentException("A scan profile has to be a preset name or an object");
+        }
+
+        final JSONObject object = (JSONObject) json;
+        // optString would turn an explicit null into "null".
+        final String presetName = object.isNull("preset") ? null : object.optString("preset");
+        final ScanProfile base = presetName != null ? preset(presetName) : current;
+        final boolean overridden = object.has("foregroundScanPeriod") || object.has("foregroundBetweenScanPeriod")
+                || object.has("backgroundScanPeriod") || object.has("backgroundBetweenScanPeriod");
+
+        return new ScanProfile(
+                overridden ? CUSTOM : base.name,
+                periodOf(object, "foregroundScanPeriod", base.foregroundScanPeriod, 1),
+                periodOf(object, "foregroundBetweenScanPeriod", base.foregroundBetweenScanPeriod, 0),
+                periodOf(object, "backgroundScanPeriod", base.backgroundScanPeriod, 1),
+                periodOf(object, "backgroundBetweenScanPeriod", base.backgroundBetweenScanPeriod, 0));
+    }
+
+    JSONObject toJson() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("name", name);
+        json.put("foregroundScanPeriod", foregroundScanPeriod);
+        json.put("foregroundBetweenScanPeriod", foregroundBetweenScanPeriod);
+        json.put("backgroundScanPeriod", backgroundScanPeriod);
+        json.put("backgroundBetweenScanPeriod", backgroundBetweenScanPeriod);
+        return json;
+    }
+
+    private static long periodOf(JSONObject json, String key, long fallback, long minimum) {
+        if (!json.has(key)) {
+            return fallback;
+        }
+        final long period = json.optLong(key, -1);
+        if (period < minimum) {
+            throw new IllegalArgumentException("Invalid " + key + ": " + json.opt(key));
+        }
+        return period;
+    }
+}
@@ -0,0 +1,108 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package com.unarin.cordova.beacon;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/*
+ * Fixed size in-memory ring buffer of structured trace records about the events passing through the
+ * plugin. Recording only stores references and primitives, nothing is formatted until the buffer is dumped,
+ * which makes it cheap enough to stay on in production. Once full, the oldest records are overwritten.
+ */
+class TraceBuffer {
+
+    private final long[] timestamps;
+    private final String[] events;
+    private final String[] regionIds;
+    private final int[] values;
+    private final String[] details;
+    private long recorded;
+
+    TraceBuffer(int capacity) {
+        timestamps = new long[capacity];
+        events = new String[capacity];
+        regionIds = new String[capacity];
+        values = new int[capacity];
+        details = new String[capacity];
+    }
+
+    public int getCapacity() {
+        return timestamps.length;
+    }
+
+    public void record(String event, String regionId, int value) {
+        record(event, regionId, value, null);
+    }
+
+    public synchronized void record(String event, String regionId, int value, String detail) {
+        if (timestamps.length == 0) {
+            return;
+        }
+        final int index = (int) (recorded % timestamps.length);
+        timestamps[index] = System.currentTimeMillis();
+        events[index] = event;
+        regionIds[index] = regionId;
+        values[index] = value;
+        details[index] = detail;
+        recorded++;
+    }
+
+    public synchronized void clear() {
+        for (int i = 0; i < timestamps.length; i++) {
+            events[i] = null;
+            regionIds[i] = null;
+            details[i] = null;
+        }
+        recorded = 0;
+    }
+
+    /*
+     * Returns the records from the oldest to the newest, along with the number of records overwritten.
+     */
+    public synchronized JSONObject toJson() throws JSONException {
+        final int capacity = timestamps.length;
+        final int size = (int) Math.min(recorded, capacity);
+        final long first = recorded - size;
+
+        JSONArray records = new JSONArray();
+        for (long i = first; i < recorded; i++) {
+            final int index = (int) (i % capacity);
+            JSONObject record = new JSONObject();
+            record.put("timestamp", timestamps[index]);
+            record.put("event", events[index]);
+            if (regionIds[index] != null) {
+                record.put("region", regionIds[index]);
+            }
+            record.put("value", values[index]);
+            if (details[index] != null) {
+                record.put("detail", details[index]);
+            }
+            records.put(record);
+        }
+
+        JSONObject dump = new JSONObject();
+        dump.put("capacity", capacity);
+        dump.put("recorded", recorded);
+        dump.put("overwritten", first);
+        dump.put("records", records);
+        return dump;
+    }
+}
@@ -0,0 +1,228 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package com.unarin.cordova.beacon;
+
+import org.altbeacon.beacon.Beacon;
+import org.altbeacon.beacon.Identifier;
+import org.altbeacon.beacon.Region;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Function;
+import org.mozilla.javascript.Scriptable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * Encodes ranging results in Java and decodes them with LocationManager._decodeBinaryRangingEvent of
+ * www/LocationManager.js, run in Rhino with the modules of the plugin, the way cordova.js defines them.
+ */
+public class BinaryRangingEncoderTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /* The module ids of plugin.xml and their files under www. */
+    private static final String[][] MODULES = {
+            {"com.unarin.cordova.beacon.underscorejs", "lib/underscore-min-1.6.js"},
+            {"com.unarin.cordova.beacon.Q", "lib/q.min.js"},
+            {"com.unarin.cordova.beacon.Delegate", "Delegate.js"},
+            {"com.unarin.cordova.beacon.Region", "model/Region.js"},
+            {"com.unarin.cordova.beacon.Regions", "Regions.js"},
+            {"com.unarin.cordova.beacon.CircularRegion", "model/CircularRegion.js"},
+            {"com.unarin.cordova.beacon.BeaconRegion", "model/BeaconRegion.js"},
+            {"com.unarin.cordova.beacon.LocationManager", "LocationManager.js"}
+    };
+
+    /* Not ASCII, decoded from UTF-8 by the DOM. */
+    private static final String HALL = "h\u00e4ll \u2713";
+
+    private static final String LOADER = ""
+            + "var modules = {};\n"
+            + "function define(id, factory) { modules[id] = {factory: factory}; }\n"
+            + "function require(id) {\n"
+            + "  var entry = modules[id];\n"
+            + "  if (!entry) { throw new Error('Module not found: ' + id); }\n"
+            + "  if (!entry.module) {\n"
+            + "    entry.module = {exports: {}};\n"
+            + "    entry.factory(require, entry.module.exports, entry.module);\n"
+            + "  }\n"
+            + "  return entry.module.exports;\n"
+            + "}\n"
+            + "define('cordova/exec', function(require, exports, module) { module.exports = function() {}; });\n";
+
+    private static final String DECODE = ""
+            + "(function(message) {\n"
+            + "  var bytes = new Uint8Array(message.length);\n"
+            + "  for (var i = 0; i < message.length; i++) { bytes[i] = message[i] & 0xff; }\n"
+            + "  var LocationManager = require('com.unarin.cordova.beacon.LocationManager').LocationManager;\n"
+            + "  return JSON.stringify(LocationManager.prototype._decodeBinaryRangingEvent(bytes.buffer));\n"
+            + "})";
+
+    private static Scriptable scope;
+    private static Function decode;
+
+    @BeforeClass
+    public static void loadLocationManager() throws IOException {
+        final File www = new File(System.getProperty("www.dir", "../../www"));
+        final Context context = Context.enter();
+        try {
+            context.setLanguageVersion(Context.VERSION_ES6);
+            scope = context.initStandardObjects();
+            context.evaluateString(scope, LOADER, "loader", 1, null);
+            for (String[] module : MODULES) {
+                final String source = new String(Files.readAllBytes(new File(www, module[1]).toPath()), UTF_8);
+                context.evaluateString(scope, "define('" + module[0] + "', function(require, exports, module) {\n"
+                        + source + "\n});", module[1], 0, null);
+            }
+            decode = (Function) context.evaluateString(scope, DECODE, "decode", 1, null);
+        } finally {
+            Context.exit();
+        }
+    }
+
+    @Test
+    public void decodesTheBeaconsOfARegion() throws Exception {
+        final Beacon near = TestBeacons.beacon(2, -65);
+        final Beacon far = TestBeacons.beacon("B9407F30-F5F8-466E-AFF9-25556B57FE6D", 65535, 0, -80);
+        final RangingResult result = new RangingResult(region("lobby"), Arrays.asList(near, far),
+                Proximities.BY_DISTANCE);
+
+        final JSONObject event = decode(BinaryRangingEncoder.KIND_REGION, result);
+
+        assertEquals("didRangeBeaconsInRegion", event.getString("eventType"));
+        assertEquals("lobby", event.getJSONObject("region").getString("identifier"));
+        assertFalse(event.has("keyframe"));
+        assertFalse(event.has("removed"));
+        assertFalse(event.has("rankingChanged"));
+
+        final JSONArray beacons = event.getJSONArray("beacons");
+        assertEquals(2, beacons.length());
+        assertBeacon(near, "e2c56db5-dffb-48d2-b060-d0f5a71096e0", "1", "2", "ProximityNear", beacons.getJSONObject(0));
+        assertBeacon(far, "b9407f30-f5f8-466e-aff9-25556b57fe6d", "65535", "0", "ProximityFar", beacons.getJSONObject(1));
+    }
+
+    @Test
+    public void decodesAFrameOfDeltaAndNearestResults() throws Exception {
+        final RangingDeltaTracker.BeaconState gone = new RangingDeltaTracker.BeaconState(
+                Identifier.parse(TestBeacons.UUID), Identifier.parse("1"), Identifier.parse("7"));
+        final RangingResult delta = new RangingResult(region("lobby"),
+                Collections.singletonList(TestBeacons.beacon(3, -60)), Proximities.BY_DISTANCE,
+                true, false, Collections.singletonList(gone), false, false);
+        final RangingResult nearest = new RangingResult(region(HALL),
+                Collections.<Beacon>emptyList(), Proximities.BY_DISTANCE,
+                false, true, Collections.<RangingDeltaTracker.BeaconState>emptyList(), true, true);
+
+        final JSONObject event = decode(BinaryRangingEncoder.KIND_FRAME, delta, nearest);
+
+        assertEquals("didRangeBeaconsInRegions", event.getString("eventType"));
+        final JSONObject regions = event.getJSONObject("regions");
+        assertEquals(2, regions.length());
+
+        final JSONObject lobby = regions.getJSONObject("lobby");
+        assertFalse(lobby.getBoolean("keyframe"));
+        assertFalse(lobby.has("rankingChanged"));
+        assertEquals(1, lobby.getJSONArray("beacons").length());
+        final JSONArray removed = lobby.getJSONArray("removed");
+        assertEquals(1, removed.length());
+        assertEquals("e2c56db5-dffb-48d2-b060-d0f5a71096e0", removed.getJSONObject(0).getString("uuid"));
+        assertEquals("1", removed.getJSONObject(0).getString("major"));
+        assertEquals("7", removed.getJSONObject(0).getString("minor"));
+
+        final JSONObject hall = regions.getJSONObject(HALL);
+        assertEquals(HALL, hall.getJSONObject("region").getString("identifier"));
+        assertTrue(hall.getBoolean("rankingChanged"));
+        assertFalse(hall.has("keyframe"));
+        assertEquals(0, hall.getJSONArray("beacons").length());
+    }
+
+    @Test
+    public void sendsTheClassOfTheClassifier() throws Exception {
+        final Beacon beacon = TestBeacons.beacon(2, -50);
+        final Proximities proximities = Proximities.classify(new ProximityClassifier() {
+            @Override
+            public int classify(String regionId, Beacon beacon) {
+                return Proximity.FAR;
+            }
+        }, "lobby", Collections.singletonList(beacon));
+
+        final JSONObject event = decode(BinaryRangingEncoder.KIND_REGION,
+                new RangingResult(region("lobby"), Collections.singletonList(beacon), proximities));
+
+        assertEquals("ProximityFar", event.getJSONArray("beacons").getJSONObject(0).getString("proximity"));
+    }
+
+    @Test
+    public void clampsTheRssiToAByte() throws Exception {
+        final Beacon beacon = TestBeacons.beacon(2, -200);
+
+        final JSONObject event = decode(BinaryRangingEncoder.KIND_REGION,
+                new RangingResult(region("lobby"), Collections.singletonList(beacon), Proximities.BY_DISTANCE));
+
+        assertEquals(-128, event.getJSONArray("beacons").getJSONObject(0).getInt("rssi"));
+    }
+
+    private static Region region(String identifier) {
+        return new Region(identifier, Identifier.parse(TestBeacons.UUID), null, null);
+    }
+
+    private static JSONObject decode(int kind, RangingResult... results) throws Exception {
+        final List<RangingResult> resultList = Arrays.asList(results);
+        final List<byte[]> regionJson = new ArrayList<byte[]>();
+        for (RangingResult result : resultList) {
+            regionJson.add(new JSONObject()
+                    .put("identifier", result.region.getUniqueId())
+                    .put("uuid", TestBeacons.UUID)
+                    .put("typeName", "BeaconRegion")
+                    .toString().getBytes(UTF_8));
+        }
+        final byte[] message = BinaryRangingEncoder.encode(kind, resultList, regionJson);
+
+        final Context context = Context.enter();
+        try {
+            context.setLanguageVersion(Context.VERSION_ES6);
+            return new JSONObject((String) decode.call(context, scope, scope, new Object[]{message}));
+        } finally {
+            Context.exit();
+        }
+    }
+
+    private static void assertBeacon(Beacon expected, String uuid, String major, String minor, String proximity,
+                                     JSONObject actual) throws Exception {
+        assertEquals(uuid, actual.getString("uuid"));
+        assertEquals(major, actual.getString("major"));
+        assertEquals(minor, actual.getString("minor"));
+        assertEquals(proximity, actual.getString("proximity"));
+        assertEquals(expected.getRssi(), actual.getInt("rssi"));
+        assertEquals(expected.getTxPower(), actual.getInt("tx"));
+        assertEquals(expected.getDistance(), actual.getDouble("accuracy"), 0.01);
+    }
+}
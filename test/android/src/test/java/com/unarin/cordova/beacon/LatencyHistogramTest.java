@@ -0,0 +1,73 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package com.unarin.cordova.beacon;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * The buckets are a quarter of a power of two wide, percentiles are reported as the upper bound of theirs.
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketsHoldTheirValues() {
+        for (long nanos = 0; nanos < TimeUnit.HOURS.toNanos(1); nanos = nanos * 3 / 2 + 1) {
+            final int index = LatencyHistogram.indexOf(nanos);
+            assertTrue(nanos + " above its bucket", nanos <= LatencyHistogram.upperBoundOf(index));
+            if (index > 0) {
+                assertTrue(nanos + " below its bucket", nanos > LatencyHistogram.upperBoundOf(index - 1));
+            }
+        }
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.indexOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void percentilesAreOffByAQuarterAtMost() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (int micros = 1; micros <= 1000; micros++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(micros));
+        }
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(1000), histogram.getMaxNanos());
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(1001) / 2.0, histogram.getAverageNanos(), 0.001);
+        assertWithinAQuarter(TimeUnit.MICROSECONDS.toNanos(500), histogram.getPercentileNanos(50));
+        assertWithinAQuarter(TimeUnit.MICROSECONDS.toNanos(990), histogram.getPercentileNanos(99));
+        assertEquals(histogram.getMaxNanos(), histogram.getPercentileNanos(100));
+    }
+
+    @Test
+    public void isZeroWithoutSamples() throws Exception {
+        final LatencyHistogram histogram = new LatencyHistogram();
+
+        assertEquals(0, histogram.getPercentileNanos(99));
+        assertEquals(0, histogram.toJson().getLong("count"));
+        assertEquals(0, histogram.toJson().getDouble("p99Ms"), 0);
+    }
+
+    private static void assertWithinAQuarter(long expected, long actual) {
+        assertTrue(actual + " is not within a quarter of " + expected,
+                actual >= expected && actual <= expected + expected / 4);
+    }
+}
@@ -0,0 +1,204 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package com.unarin.cordova.beacon;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * Appends and acknowledges events with one log and replays them with the next one, like a process which
+ * died with events still on their way to the DOM. Closing a log waits for the events queued for its thread.
+ */
+public class MonitoringEventLogTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void replaysTheEventsWhichWereNotAcknowledged() throws Exception {
+        final File file = new File(folder.getRoot(), "events");
+        final MonitoringEventLog log = MonitoringEventLog.open(file);
+        final MonitoringEventLog.Event enter = log.append(bytes("enter lobby"));
+        final MonitoringEventLog.Event state = log.append(bytes("state lobby"));
+        final MonitoringEventLog.Event exit = log.append(bytes("exit lobby"));
+        log.acknowledge(state);
+        log.close();
+        assertTrue(enter.sequence >= 0);
+        assertTrue(state.sequence > enter.sequence);
+        assertTrue(exit.sequence > state.sequence);
+
+        final MonitoringEventLog reopened = MonitoringEventLog.open(file);
+        final List<MonitoringEventLog.Event> replayed = replay(reopened);
+        assertEquals(2, replayed.size());
+        assertEquals(enter.sequence, replayed.get(0).sequence);
+        assertArrayEquals(bytes("enter lobby"), replayed.get(0).payload);
+        assertEquals(exit.sequence, replayed.get(1).sequence);
+        assertArrayEquals(bytes("exit lobby"), replayed.get(1).payload);
+
+        // Sequences go on after the ones of the previous run, acks of replayed events can't be mistaken.
+        final MonitoringEventLog.Event next = reopened.append(bytes("enter hall"));
+        reopened.close();
+        assertTrue(next.sequence > exit.sequence);
+    }
+
+    @Test
+    public void writesTheEventsAppendedWhileOpening() throws Exception {
+        final File file = new File(folder.getRoot(), "events");
+        final MonitoringEventLog log = MonitoringEventLog.open(file);
+        final MonitoringEventLog.Event enter = log.append(bytes("enter lobby"));
+        log.close();
+
+        final MonitoringEventLog reopened = MonitoringEventLog.open(file);
+        // Appended right away, before the log had a chance to open.
+        final MonitoringEventLog.Event exit = reopened.append(bytes("exit lobby"));
+        reopened.acknowledge(exit);
+        final List<MonitoringEventLog.Event> replayed = replay(reopened);
+        reopened.close();
+
+        assertEquals(1, replayed.size());
+        assertEquals(enter.sequence, replayed.get(0).sequence);
+        assertTrue(exit.sequence > enter.sequence);
+
+        final MonitoringEventLog third = MonitoringEventLog.open(file);
+        assertEquals(1, replay(third).size());
+        third.close();
+    }
+
+    @Test
+    public void replaysAnEventUntilItIsAcknowledged() throws Exception {
+        final File file = new File(folder.getRoot(), "events");
+        final MonitoringEventLog log = MonitoringEventLog.open(file);
+        log.append(bytes("enter lobby"));
+        log.close();
+
+        final MonitoringEventLog second = MonitoringEventLog.open(file);
+        assertEquals(1, replay(second).size());
+        second.close();
+
+        final MonitoringEventLog third = MonitoringEventLog.open(file);
+        final List<MonitoringEventLog.Event> replayed = replay(third);
+        assertEquals(1, replayed.size());
+        third.acknowledge(replayed.get(0));
+        third.close();
+
+        final MonitoringEventLog fourth = MonitoringEventLog.open(file);
+        assertTrue(replay(fourth).isEmpty());
+        fourth.close();
+    }
+
+    @Test
+    public void replaysOnlyOnce() throws Exception {
+        final File file = new File(folder.getRoot(), "events");
+        final MonitoringEventLog log = MonitoringEventLog.open(file);
+        log.append(bytes("enter lobby"));
+        log.close();
+
+        final MonitoringEventLog reopened = MonitoringEventLog.open(file);
+        assertEquals(1, replay(reopened).size());
+        assertTrue(replay(reopened).isEmpty());
+        reopened.close();
+    }
+
+    @Test
+    public void endsTheLogAtATornRecord() throws Exception {
+        final File file = new File(folder.getRoot(), "events");
+        final MonitoringEventLog log = MonitoringEventLog.open(file);
+        final MonitoringEventLog.Event enter = log.append(bytes("enter lobby"));
+        log.close();
+        final long afterEnter = file.length();
+
+        final MonitoringEventLog second = MonitoringEventLog.open(file);
+        second.append(bytes("exit lobby"));
+        second.close();
+
+        // The process died in the middle of writing the second record.
+        final RandomAccessFile torn = new RandomAccessFile(file, "rw");
+        try {
+            torn.setLength(torn.length() - 3);
+        } finally {
+            torn.close();
+        }
+
+        final MonitoringEventLog reopened = MonitoringEventLog.open(file);
+        final List<MonitoringEventLog.Event> replayed = replay(reopened);
+        reopened.close();
+
+        assertEquals(1, replayed.size());
+        assertEquals(enter.sequence, replayed.get(0).sequence);
+        // Compacted to the one complete record.
+        assertEquals(afterEnter, file.length());
+    }
+
+    @Test
+    public void compactsToTheEventsWhichWereNotAcknowledged() throws Exception {
+        final File file = new File(folder.getRoot(), "events");
+        final MonitoringEventLog log = MonitoringEventLog.open(file);
+        for (int i = 0; i < 100; i++) {
+            log.acknowledge(log.append(bytes("event " + i)));
+        }
+        final MonitoringEventLog.Event pending = log.append(bytes("exit lobby"));
+        log.close();
+        final long length = file.length();
+
+        final MonitoringEventLog reopened = MonitoringEventLog.open(file);
+        final List<MonitoringEventLog.Event> replayed = replay(reopened);
+        reopened.close();
+        assertEquals(1, replayed.size());
+        assertEquals(pending.sequence, replayed.get(0).sequence);
+
+        assertTrue(file.length() < length);
+    }
+
+    private static List<MonitoringEventLog.Event> replay(MonitoringEventLog log) throws InterruptedException {
+        final CountDownLatch recovered = new CountDownLatch(1);
+        final ArrayList<List<MonitoringEventLog.Event>> events = new ArrayList<List<MonitoringEventLog.Event>>(1);
+        log.replay(new MonitoringEventLog.RecoveryListener() {
+            @Override
+            public void onRecovered(List<MonitoringEventLog.Event> recoveredEvents) {
+                synchronized (events) {
+                    events.add(recoveredEvents);
+                }
+                recovered.countDown();
+            }
+        });
+        assertTrue("the events were not replayed", recovered.await(5, TimeUnit.SECONDS));
+        synchronized (events) {
+            return events.get(0);
+        }
+    }
+
+    private static byte[] bytes(String event) {
+        return event.getBytes(UTF_8);
+    }
+}
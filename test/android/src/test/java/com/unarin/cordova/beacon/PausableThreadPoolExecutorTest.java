@@ -0,0 +1,126 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package com.unarin.cordova.beacon;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * The block-producer overflow policy with a producer off the main thread, like the command thread or the
+ * thread of the monitoring event log. There is no main looper on a plain JVM, the fallback of the main
+ * thread to drop-ranging-first needs a device.
+ */
+public class PausableThreadPoolExecutorTest {
+
+    private final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+    private PausableThreadPoolExecutor executor;
+
+    @After
+    public void shutDown() throws InterruptedException {
+        executor.shutdownNow();
+        executor.awaitTermination(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void blocksTheProducerUntilThereIsRoom() throws InterruptedException {
+        executor = new PausableThreadPoolExecutor(new ArrayBlockingQueue<Runnable>(1),
+                EventQueueOverflowPolicy.BLOCK_PRODUCER);
+        executor.pause();
+
+        // The worker takes the first event and parks on it, the queue holds one more.
+        executor.execute(event("didEnterRegion lobby"));
+        executor.execute(event("didExitRegion lobby"));
+        final Thread producer = produce(event("didEnterRegion hall"));
+
+        producer.join(200);
+        assertTrue("the producer should wait for room", producer.isAlive());
+
+        executor.resume();
+        producer.join(1000);
+        assertFalse(producer.isAlive());
+        drain();
+
+        assertEquals(0, executor.getDroppedCount());
+        assertEquals(Arrays.asList("didEnterRegion lobby", "didExitRegion lobby", "didEnterRegion hall"), events);
+    }
+
+    @Test
+    public void dropsTheEventWhenThereIsNoRoomWithinASecond() throws InterruptedException {
+        executor = new PausableThreadPoolExecutor(new ArrayBlockingQueue<Runnable>(1),
+                EventQueueOverflowPolicy.BLOCK_PRODUCER);
+        executor.pause();
+
+        executor.execute(event("didEnterRegion lobby"));
+        executor.execute(event("didExitRegion lobby"));
+        final long startedNanos = System.nanoTime();
+        final Thread producer = produce(event("didEnterRegion hall"));
+        producer.join(5000);
+        assertFalse(producer.isAlive());
+        assertTrue(System.nanoTime() - startedNanos >= TimeUnit.MILLISECONDS.toNanos(900));
+        assertEquals(1, executor.getDroppedCount());
+        assertEquals(Collections.singletonList("discarded didEnterRegion hall"), events);
+
+        executor.resume();
+        drain();
+
+        assertEquals(Arrays.asList("discarded didEnterRegion hall", "didEnterRegion lobby", "didExitRegion lobby"),
+                events);
+    }
+
+    private EventTask event(final String event) {
+        return new EventTask(event) {
+            @Override
+            public void run() {
+                events.add(event);
+            }
+
+            @Override
+            public void discard() {
+                events.add("discarded " + event);
+            }
+        };
+    }
+
+    private Thread produce(final EventTask task) {
+        final Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                executor.execute(task);
+            }
+        }, "producer");
+        producer.start();
+        return producer;
+    }
+
+    private void drain() throws InterruptedException {
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+    }
+}
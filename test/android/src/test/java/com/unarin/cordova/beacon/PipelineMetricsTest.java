@@ -0,0 +1,86 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package com.unarin.cordova.beacon;
+
+import org.altbeacon.beacon.Beacon;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+
+import static org.junit.Assert.assertEquals;
+
+/*
+ * The scan cycles built from the ranging callbacks, fed from the test thread as the single writer.
+ */
+public class PipelineMetricsTest {
+
+    @Test
+    public void countsDistinctBeaconsOfACycleOnceARegionRepeats() throws Exception {
+        final PipelineMetrics metrics = new PipelineMetrics();
+        metrics.recordRangingCallback("all", Arrays.asList(TestBeacons.beacon(1, -60), TestBeacons.beacon(2, -60)));
+        metrics.recordRangingCallback("entrance", Arrays.asList(TestBeacons.beacon(2, -61)));
+
+        assertEquals(0, scanning(metrics).getLong("cycles"));
+
+        metrics.recordRangingCallback("all", Arrays.asList(TestBeacons.beacon(3, -60)));
+
+        final JSONObject scanning = scanning(metrics);
+        assertEquals(1, scanning.getLong("cycles"));
+        assertEquals(2, scanning.getLong("maxBeaconsPerCycle"));
+    }
+
+    @Test
+    public void countsTheLastCycleOnceScanningStopped() throws Exception {
+        final PipelineMetrics metrics = new PipelineMetrics();
+        metrics.recordRangingCallback("all", Arrays.asList(TestBeacons.beacon(1, -60)));
+        Thread.sleep(600);
+
+        assertEquals(1, scanning(metrics).getLong("cycles"));
+        assertEquals(1, scanning(metrics).getLong("cycles"));
+
+        // The next callback starts a new cycle, the one counted by toJson() is not counted again.
+        metrics.recordRangingCallback("all", Arrays.asList(TestBeacons.beacon(2, -60), TestBeacons.beacon(3, -60)));
+        metrics.recordRangingCallback("all", Arrays.<Beacon>asList());
+
+        final JSONObject scanning = scanning(metrics);
+        assertEquals(2, scanning.getLong("cycles"));
+        assertEquals(1.5, scanning.getDouble("avgBeaconsPerCycle"), 0.001);
+    }
+
+    @Test
+    public void growsTheCycleBeyondItsInitialSize() throws Exception {
+        final PipelineMetrics metrics = new PipelineMetrics();
+        final Collection<Beacon> beacons = new ArrayList<Beacon>();
+        for (int minor = 0; minor < 500; minor++) {
+            beacons.add(TestBeacons.beacon(minor, -70));
+        }
+        metrics.recordRangingCallback("all", beacons);
+        metrics.recordRangingCallback("entrance", beacons);
+        metrics.recordRangingCallback("all", beacons);
+
+        assertEquals(500, scanning(metrics).getLong("maxBeaconsPerCycle"));
+    }
+
+    private static JSONObject scanning(PipelineMetrics metrics) throws Exception {
+        return metrics.toJson().getJSONObject("scanning");
+    }
+}
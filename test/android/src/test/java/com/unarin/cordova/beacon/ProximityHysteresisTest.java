@@ -0,0 +1,92 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package com.unarin.cordova.beacon;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/*
+ * Classifies with the default bands and dwell time at given times. With the model of TestBeacons an RSSI of
+ * -52 is 0.45 m, -54 is 0.56 m, -60 is 1.1 m, -71 is 3.98 m, -72 is 4.5 m and -74 is 5.6 m.
+ */
+public class ProximityHysteresisTest {
+
+    private final ProximityHysteresis hysteresis = new ProximityHysteresis(
+            ProximityHysteresis.DEFAULT_IMMEDIATE_NEAR_BAND, ProximityHysteresis.DEFAULT_NEAR_FAR_BAND,
+            ProximityHysteresis.DEFAULT_MIN_DWELL_MILLIS);
+
+    @Test
+    public void startsWithTheClassOfTheDistance() {
+        assertEquals(Proximity.IMMEDIATE, classify("lobby", -52, 0));
+        assertEquals(Proximity.FAR, hysteresis.classify("lobby", TestBeacons.beacon(3, -74), 0));
+    }
+
+    @Test
+    public void keepsTheClassWithinTheBand() {
+        assertEquals(Proximity.IMMEDIATE, classify("lobby", -52, 0));
+        assertEquals(Proximity.IMMEDIATE, classify("lobby", -54, 5000));
+        assertEquals(Proximity.IMMEDIATE, classify("lobby", -54, 10000));
+    }
+
+    @Test
+    public void changesTheClassAfterTheDwellTime() {
+        assertEquals(Proximity.IMMEDIATE, classify("lobby", -52, 0));
+        assertEquals(Proximity.IMMEDIATE, classify("lobby", -60, 100));
+        assertEquals(Proximity.IMMEDIATE, classify("lobby", -60, 1000));
+        assertEquals(Proximity.NEAR, classify("lobby", -60, 2100));
+    }
+
+    @Test
+    public void restartsTheDwellTimeWhenTheClassComesBack() {
+        assertEquals(Proximity.IMMEDIATE, classify("lobby", -52, 0));
+        assertEquals(Proximity.IMMEDIATE, classify("lobby", -60, 100));
+        assertEquals(Proximity.IMMEDIATE, classify("lobby", -52, 1000));
+        assertEquals(Proximity.IMMEDIATE, classify("lobby", -60, 2200));
+        assertEquals(Proximity.IMMEDIATE, classify("lobby", -60, 4100));
+        assertEquals(Proximity.NEAR, classify("lobby", -60, 4200));
+    }
+
+    @Test
+    public void widensTheNearFarThreshold() {
+        assertEquals(Proximity.NEAR, classify("lobby", -71, 0));
+        assertEquals(Proximity.NEAR, classify("lobby", -72, 100));
+        assertEquals(Proximity.NEAR, classify("lobby", -72, 5000));
+        assertEquals(Proximity.NEAR, classify("lobby", -74, 5100));
+        assertEquals(Proximity.FAR, classify("lobby", -74, 7100));
+    }
+
+    @Test
+    public void keepsTheRegionsApart() {
+        assertEquals(Proximity.IMMEDIATE, classify("lobby", -52, 0));
+        assertEquals(Proximity.NEAR, classify("hall", -60, 100));
+        assertEquals(Proximity.IMMEDIATE, classify("lobby", -60, 100));
+    }
+
+    @Test
+    public void keepsTheBeaconsApart() {
+        assertEquals(Proximity.IMMEDIATE, classify("lobby", -52, 0));
+        assertEquals(Proximity.NEAR, hysteresis.classify("lobby", TestBeacons.beacon(3, -60), 100));
+    }
+
+    /* The same beacon, ranged again with another RSSI. */
+    private int classify(String regionId, int rssi, long now) {
+        return hysteresis.classify(regionId, TestBeacons.beacon(2, rssi), now);
+    }
+}
@@ -0,0 +1,121 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package com.unarin.cordova.beacon;
+
+import org.altbeacon.beacon.Beacon;
+import org.altbeacon.beacon.Identifier;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * Ranging cycles in delta mode with the default thresholds and a keyframe every third cycle. With the model
+ * of TestBeacons an RSSI of -59 is 1 m, -60 is 1.12 m, -62 is 1.41 m, -79 is 10 m and -80 is 11.2 m.
+ */
+public class RangingDeltaTrackerTest {
+
+    private final RangingDeltaTracker tracker = new RangingDeltaTracker(RangingDeltaTracker.DEFAULT_RSSI_THRESHOLD,
+            RangingDeltaTracker.DEFAULT_ACCURACY_THRESHOLD, 3);
+
+    @Test
+    public void sendsEveryBeaconOfAKeyframe() {
+        assertTrue(tracker.beginCycle());
+        assertTrue(offer(TestBeacons.beacon(2, -59)));
+        assertTrue(offer(TestBeacons.beacon(3, -70)));
+        assertTrue(tracker.endCycle().isEmpty());
+
+        assertFalse(tracker.beginCycle());
+        assertFalse(tracker.beginCycle());
+        assertTrue(tracker.beginCycle());
+        assertTrue(offer(TestBeacons.beacon(2, -59)));
+    }
+
+    @Test
+    public void skipsBeaconsWhichDidNotMove() {
+        cycle(TestBeacons.beacon(2, -59));
+
+        assertFalse(tracker.beginCycle());
+        assertFalse(offer(TestBeacons.beacon(2, -60)));
+        assertTrue(tracker.endCycle().isEmpty());
+    }
+
+    @Test
+    public void sendsBeaconsWhichMovedBeyondTheRssiThreshold() {
+        cycle(TestBeacons.beacon(2, -59));
+
+        tracker.beginCycle();
+        assertTrue(offer(TestBeacons.beacon(2, -62)));
+        tracker.endCycle();
+
+        // Compared with what was sent last, not with the previous cycle.
+        tracker.beginCycle();
+        assertFalse(offer(TestBeacons.beacon(2, -60)));
+    }
+
+    @Test
+    public void sendsBeaconsWhichMovedBeyondTheAccuracyThreshold() {
+        cycle(TestBeacons.beacon(2, -79));
+
+        tracker.beginCycle();
+        assertTrue(offer(TestBeacons.beacon(2, -80)));
+    }
+
+    @Test
+    public void sendsBeaconsWhichChangedTheirClass() {
+        cycle(TestBeacons.beacon(2, -59));
+
+        tracker.beginCycle();
+        assertTrue(tracker.offer(TestBeacons.beacon(2, -59), Proximity.nameOf(Proximity.FAR)));
+    }
+
+    @Test
+    public void reportsTheBeaconsWhichWentMissing() {
+        cycle(TestBeacons.beacon(2, -59), TestBeacons.beacon(7, -70));
+
+        tracker.beginCycle();
+        offer(TestBeacons.beacon(2, -59));
+        final List<RangingDeltaTracker.BeaconState> removed = tracker.endCycle();
+
+        assertEquals(1, removed.size());
+        assertEquals(Identifier.parse(TestBeacons.UUID), removed.get(0).uuid);
+        assertEquals(Identifier.parse("1"), removed.get(0).major);
+        assertEquals(Identifier.parse("7"), removed.get(0).minor);
+
+        // Sent again as a new beacon when it comes back.
+        tracker.endCycle();
+        tracker.beginCycle();
+        assertTrue(offer(TestBeacons.beacon(7, -70)));
+    }
+
+    private void cycle(Beacon... beacons) {
+        tracker.beginCycle();
+        for (Beacon beacon : beacons) {
+            offer(beacon);
+        }
+        tracker.endCycle();
+    }
+
+    private boolean offer(Beacon beacon) {
+        return tracker.offer(beacon, Proximity.nameOf(Proximity.classify(beacon.getDistance())));
+    }
+}
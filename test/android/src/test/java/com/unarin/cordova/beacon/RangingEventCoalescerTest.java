@@ -0,0 +1,231 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package com.unarin.cordova.beacon;
+
+import org.altbeacon.beacon.Beacon;
+import org.altbeacon.beacon.Region;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * Ranging and monitoring events queued while the event queue is paused, like they are until the DOM
+ * delegate is ready. The ranging dispatches, of single regions and of the frames of the batcher, are
+ * scheduled the way LocationManager schedules them.
+ */
+public class RangingEventCoalescerTest {
+
+    private final Region lobby = new Region("lobby", null, null, null);
+    private final Region hall = new Region("hall", null, null, null);
+
+    private final RangingEventCoalescer coalescer = new RangingEventCoalescer();
+    private final List<String> dispatched = Collections.synchronizedList(new ArrayList<String>());
+    private PausableThreadPoolExecutor executor;
+
+    @After
+    public void shutDown() throws InterruptedException {
+        executor.shutdownNow();
+        executor.awaitTermination(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void dispatchesTheNewestSnapshotOnceWhilePaused() throws InterruptedException {
+        executor = new PausableThreadPoolExecutor(new LinkedBlockingQueue<Runnable>());
+        executor.pause();
+
+        monitor("didEnterRegion lobby");
+        range(lobby, TestBeacons.beacon(1, -60));
+        range(lobby, TestBeacons.beacon(2, -60));
+        monitor("didExitRegion lobby");
+        range(lobby, TestBeacons.beacon(3, -60));
+        range(hall, TestBeacons.beacon(4, -60));
+        monitor("didEnterRegion hall");
+
+        executor.resume();
+        drain();
+
+        assertEquals(Arrays.asList(
+                "didEnterRegion lobby",
+                "didRangeBeaconsInRegion lobby [3]",
+                "didExitRegion lobby",
+                "didRangeBeaconsInRegion hall [4]",
+                "didEnterRegion hall"), dispatched);
+    }
+
+    @Test
+    public void schedulesAgainWhenTheDispatchWasDropped() throws InterruptedException {
+        executor = new PausableThreadPoolExecutor(new ArrayBlockingQueue<Runnable>(1),
+                EventQueueOverflowPolicy.DROP_RANGING_FIRST);
+        executor.pause();
+
+        // The worker takes the first event and parks on it, the queue holds one more.
+        monitor("didEnterRegion lobby");
+        range(lobby, TestBeacons.beacon(1, -60));
+        monitor("didExitRegion lobby");
+        assertEquals(1, executor.getDroppedCount());
+
+        executor.resume();
+        awaitDispatched(2);
+
+        range(lobby, TestBeacons.beacon(2, -60));
+        drain();
+
+        assertEquals(Arrays.asList(
+                "didEnterRegion lobby",
+                "didExitRegion lobby",
+                "didRangeBeaconsInRegion lobby [2]"), dispatched);
+    }
+
+    @Test
+    public void mergesTheFramesOfTheBatcherWhilePaused() throws InterruptedException {
+        executor = new PausableThreadPoolExecutor(new LinkedBlockingQueue<Runnable>());
+        executor.pause();
+        final Region garden = new Region("garden", null, null, null);
+
+        monitor("didEnterRegion lobby");
+        frame(snapshot(lobby, TestBeacons.beacon(1, -60)), snapshot(hall, TestBeacons.beacon(2, -60)));
+        frame(snapshot(lobby, TestBeacons.beacon(3, -60)));
+        monitor("didExitRegion lobby");
+        frame(snapshot(hall, TestBeacons.beacon(4, -60)), snapshot(garden, TestBeacons.beacon(5, -60)));
+
+        executor.resume();
+        drain();
+
+        assertEquals(Arrays.asList(
+                "didEnterRegion lobby",
+                "didRangeBeaconsInRegions lobby [3] hall [4] garden [5]",
+                "didExitRegion lobby"), dispatched);
+    }
+
+    @Test
+    public void keepsTheRankingChangeOfAReplacedSnapshot() {
+        executor = new PausableThreadPoolExecutor(new LinkedBlockingQueue<Runnable>());
+
+        assertTrue(coalescer.offer(nearest(lobby, true, TestBeacons.beacon(1, -60))));
+        assertFalse(coalescer.offer(nearest(lobby, false, TestBeacons.beacon(2, -60))));
+
+        // The DOM never saw the ranking of the first snapshot, so the one it gets has changed.
+        final RangingEventCoalescer.Snapshot snapshot = coalescer.take(lobby);
+        assertTrue(snapshot.rankingChanged);
+        assertEquals(Collections.singletonList(2), minorsOf(snapshot.beacons));
+
+        assertTrue(coalescer.offer(nearest(lobby, false, TestBeacons.beacon(3, -60))));
+        assertFalse(coalescer.take(lobby).rankingChanged);
+    }
+
+    private void monitor(final String event) {
+        executor.execute(new EventTask(event) {
+            @Override
+            public void run() {
+                dispatched.add(event);
+            }
+        });
+    }
+
+    private void range(final Region region, Beacon... beacons) {
+        if (coalescer.offer(snapshot(region, beacons))) {
+            executor.execute(new RangingEventTask("didRangeBeaconsInRegion", System.nanoTime()) {
+                @Override
+                public void run() {
+                    final RangingEventCoalescer.Snapshot snapshot = coalescer.take(region);
+                    if (snapshot != null) {
+                        dispatched.add(eventType + " " + region.getUniqueId() + " " + minorsOf(snapshot.beacons));
+                    }
+                }
+
+                @Override
+                public void discard() {
+                    coalescer.take(region);
+                }
+            });
+        }
+    }
+
+    private void awaitDispatched(int events) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (dispatched.size() < events && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(events, dispatched.size());
+    }
+
+    private static RangingEventCoalescer.Snapshot nearest(Region region, boolean rankingChanged, Beacon... beacons) {
+        return new RangingEventCoalescer.Snapshot(region, Arrays.asList(beacons), Proximities.BY_DISTANCE, true,
+                rankingChanged, System.nanoTime());
+    }
+
+    private void frame(RangingEventCoalescer.Snapshot... snapshots) {
+        final LinkedHashMap<String, RangingEventCoalescer.Snapshot> frame =
+                new LinkedHashMap<String, RangingEventCoalescer.Snapshot>();
+        for (RangingEventCoalescer.Snapshot snapshot : snapshots) {
+            frame.put(snapshot.region.getUniqueId(), snapshot);
+        }
+        if (coalescer.offerFrame(frame)) {
+            executor.execute(new RangingEventTask("didRangeBeaconsInRegions", System.nanoTime()) {
+                @Override
+                public void run() {
+                    final LinkedHashMap<String, RangingEventCoalescer.Snapshot> latest = coalescer.takeFrame();
+                    if (latest != null) {
+                        final StringBuilder event = new StringBuilder(eventType);
+                        for (RangingEventCoalescer.Snapshot snapshot : latest.values()) {
+                            event.append(' ').append(snapshot.region.getUniqueId())
+                                    .append(' ').append(minorsOf(snapshot.beacons));
+                        }
+                        dispatched.add(event.toString());
+                    }
+                }
+
+                @Override
+                public void discard() {
+                    coalescer.takeFrame();
+                }
+            });
+        }
+    }
+
+    private static RangingEventCoalescer.Snapshot snapshot(Region region, Beacon... beacons) {
+        return new RangingEventCoalescer.Snapshot(region, Arrays.asList(beacons), Proximities.BY_DISTANCE, false,
+                false, System.nanoTime());
+    }
+
+    private void drain() throws InterruptedException {
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+    }
+
+    private static List<Integer> minorsOf(Iterable<Beacon> beacons) {
+        final List<Integer> minors = new ArrayList<Integer>();
+        for (Beacon beacon : beacons) {
+            minors.add(beacon.getId3().toInt());
+        }
+        return minors;
+    }
+}
@@ -0,0 +1,130 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package com.unarin.cordova.beacon;
+
+import org.altbeacon.beacon.Beacon;
+import org.altbeacon.beacon.Identifier;
+import org.altbeacon.beacon.Region;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * Lookups of registered regions by identifier and by the identifiers of a beacon, with regions leaving
+ * major, minor or all identifiers empty.
+ */
+public class RegionRegistryTest {
+
+    private static final String OTHER_UUID = "B9407F30-F5F8-466E-AFF9-25556B57FE6D";
+
+    private final RegionRegistry registry = new RegionRegistry();
+
+    @Test
+    public void findsTheRegionsContainingABeacon() {
+        register(region("exact", TestBeacons.UUID, 1, 2), RegionRegistry.MONITORED);
+        register(region("anyMinor", TestBeacons.UUID, 1, null), RegionRegistry.RANGED);
+        register(region("anyMajor", TestBeacons.UUID, null, null), RegionRegistry.MONITORED);
+        register(region("everything", null, null, null), RegionRegistry.RANGED);
+        register(region("otherMinor", TestBeacons.UUID, 1, 3), RegionRegistry.MONITORED);
+        register(region("otherMajor", TestBeacons.UUID, 2, null), RegionRegistry.MONITORED);
+        register(region("otherUuid", OTHER_UUID, null, null), RegionRegistry.MONITORED);
+
+        assertEquals(Arrays.asList("anyMajor", "anyMinor", "everything", "exact"),
+                uniqueIdsContaining(TestBeacons.beacon(TestBeacons.UUID, 1, 2, -60)));
+        assertEquals(Arrays.asList("anyMajor", "everything", "otherMajor"),
+                uniqueIdsContaining(TestBeacons.beacon(TestBeacons.UUID, 2, 7, -60)));
+        assertEquals(Arrays.asList("everything", "otherUuid"),
+                uniqueIdsContaining(TestBeacons.beacon(OTHER_UUID, 1, 2, -60)));
+    }
+
+    @Test
+    public void findsARegionOnceWhenItIsMonitoredAndRanged() {
+        final Region lobby = region("lobby", TestBeacons.UUID, 1, null);
+        register(lobby, RegionRegistry.MONITORED);
+        register(lobby, RegionRegistry.RANGED);
+
+        final List<RegionRegistry.Entry> entries = registry.regionsContaining(TestBeacons.beacon(TestBeacons.UUID, 1, 2, -60));
+        assertEquals(1, entries.size());
+        assertEquals(RegionRegistry.MONITORED | RegionRegistry.RANGED, entries.get(0).usages);
+        assertSame(entries.get(0), registry.get(lobby));
+    }
+
+    @Test
+    public void forgetsARegionOnceNeitherMonitoredNorRanged() {
+        final Region lobby = region("lobby", TestBeacons.UUID, 1, null);
+        register(lobby, RegionRegistry.MONITORED);
+        register(lobby, RegionRegistry.RANGED);
+        final Beacon beacon = TestBeacons.beacon(TestBeacons.UUID, 1, 2, -60);
+
+        registry.unregister(lobby, RegionRegistry.MONITORED);
+        assertEquals(Collections.singletonList("lobby"), uniqueIdsContaining(beacon));
+        assertEquals(RegionRegistry.RANGED, registry.get("lobby").usages);
+
+        registry.unregister(lobby, RegionRegistry.RANGED);
+        assertTrue(registry.regionsContaining(beacon).isEmpty());
+        assertNull(registry.get("lobby"));
+    }
+
+    @Test
+    public void movesARegionStartedAgainWithOtherIdentifiers() {
+        register(region("lobby", TestBeacons.UUID, 1, null), RegionRegistry.RANGED);
+        final Region moved = region("lobby", TestBeacons.UUID, 2, null);
+        register(moved, RegionRegistry.RANGED);
+
+        assertTrue(registry.regionsContaining(TestBeacons.beacon(TestBeacons.UUID, 1, 2, -60)).isEmpty());
+        assertEquals(Collections.singletonList("lobby"),
+                uniqueIdsContaining(TestBeacons.beacon(TestBeacons.UUID, 2, 2, -60)));
+        assertSame(moved, registry.get("lobby").region);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsOtherIdentifiersForTheOtherUsage() {
+        register(region("lobby", TestBeacons.UUID, 1, null), RegionRegistry.MONITORED);
+        register(region("lobby", TestBeacons.UUID, 2, null), RegionRegistry.RANGED);
+    }
+
+    private void register(Region region, int usage) {
+        registry.register(region, usage, new JSONObject());
+    }
+
+    private List<String> uniqueIdsContaining(Beacon beacon) {
+        final List<String> uniqueIds = new ArrayList<String>();
+        for (RegionRegistry.Entry entry : registry.regionsContaining(beacon)) {
+            uniqueIds.add(entry.region.getUniqueId());
+        }
+        Collections.sort(uniqueIds);
+        return uniqueIds;
+    }
+
+    private static Region region(String uniqueId, String uuid, Integer major, Integer minor) {
+        return new Region(uniqueId,
+                uuid != null ? Identifier.parse(uuid) : null,
+                major != null ? Identifier.fromInt(major) : null,
+                minor != null ? Identifier.fromInt(minor) : null);
+    }
+}
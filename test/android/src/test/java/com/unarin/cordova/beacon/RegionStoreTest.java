@@ -0,0 +1,156 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package com.unarin.cordova.beacon;
+
+import org.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * Writes regions with one store and reads them back with the next one, like two runs of the app.
+ */
+public class RegionStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void restoresNothingWithoutAFile() throws Exception {
+        assertTrue(restore(new File(folder.getRoot(), "regions")).isEmpty());
+    }
+
+    @Test
+    public void restoresTheRegionsInTheOrderTheyWereStarted() throws Exception {
+        final File file = new File(folder.getRoot(), "regions");
+        final RegionStore store = open(file);
+        store.put("lobby", RegionRegistry.MONITORED, region("lobby"), null);
+        store.put("hall", RegionRegistry.RANGED, region("hall"), new JSONObject().put("delta", true));
+        store.put("lobby", RegionRegistry.RANGED, region("lobby"), new JSONObject().put("nearest", 3));
+        store.close();
+
+        final List<RegionStore.StoredRegion> restored = restore(file);
+
+        assertEquals(2, restored.size());
+        final RegionStore.StoredRegion lobby = restored.get(0);
+        assertEquals("lobby", lobby.uniqueId);
+        assertTrue(lobby.isMonitored());
+        assertTrue(lobby.isRanged());
+        assertEquals("lobby", lobby.getRegion().getString("identifier"));
+        assertNull(lobby.getMonitoringOptions());
+        assertEquals(3, lobby.getRangingOptions().getInt("nearest"));
+
+        final RegionStore.StoredRegion hall = restored.get(1);
+        assertEquals("hall", hall.uniqueId);
+        assertFalse(hall.isMonitored());
+        assertTrue(hall.isRanged());
+        assertTrue(hall.getRangingOptions().getBoolean("delta"));
+    }
+
+    @Test
+    public void forgetsStoppedRegions() throws Exception {
+        final File file = new File(folder.getRoot(), "regions");
+        final RegionStore store = open(file);
+        store.put("lobby", RegionRegistry.MONITORED, region("lobby"), new JSONObject().put("notifyEntryStateOnDisplay", true));
+        store.put("lobby", RegionRegistry.RANGED, region("lobby"), new JSONObject().put("delta", true));
+        store.put("hall", RegionRegistry.MONITORED, region("hall"), null);
+        store.remove("lobby", RegionRegistry.RANGED);
+        store.remove("hall", RegionRegistry.MONITORED);
+        store.close();
+
+        final List<RegionStore.StoredRegion> restored = restore(file);
+
+        assertEquals(1, restored.size());
+        final RegionStore.StoredRegion lobby = restored.get(0);
+        assertTrue(lobby.isMonitored());
+        assertFalse(lobby.isRanged());
+        assertTrue(lobby.getMonitoringOptions().getBoolean("notifyEntryStateOnDisplay"));
+        assertNull(lobby.getRangingOptions());
+    }
+
+    @Test
+    public void keepsTheRegionsOfTheRunBefore() throws Exception {
+        final File file = new File(folder.getRoot(), "regions");
+        final RegionStore first = open(file);
+        first.put("lobby", RegionRegistry.MONITORED, region("lobby"), null);
+        first.close();
+
+        // The restored regions are written again along with the ones started in the second run.
+        final RestoredRegions listener = new RestoredRegions();
+        final RegionStore second = RegionStore.open(file, listener);
+        assertEquals(1, listener.await().size());
+        second.put("hall", RegionRegistry.MONITORED, region("hall"), null);
+        second.close();
+
+        final List<RegionStore.StoredRegion> restored = restore(file);
+        assertEquals(2, restored.size());
+        assertEquals("lobby", restored.get(0).uniqueId);
+        assertEquals("hall", restored.get(1).uniqueId);
+    }
+
+    private static RegionStore open(File file) throws InterruptedException {
+        final RestoredRegions listener = new RestoredRegions();
+        final RegionStore store = RegionStore.open(file, listener);
+        listener.await();
+        return store;
+    }
+
+    private static List<RegionStore.StoredRegion> restore(File file) throws InterruptedException {
+        final RestoredRegions listener = new RestoredRegions();
+        final RegionStore store = RegionStore.open(file, listener);
+        try {
+            return listener.await();
+        } finally {
+            store.close();
+        }
+    }
+
+    private static JSONObject region(String identifier) throws Exception {
+        return new JSONObject()
+                .put("identifier", identifier)
+                .put("uuid", TestBeacons.UUID)
+                .put("typeName", "BeaconRegion");
+    }
+
+    private static final class RestoredRegions implements RegionStore.RestoreListener {
+        private final CountDownLatch restored = new CountDownLatch(1);
+        private volatile List<RegionStore.StoredRegion> regions;
+
+        @Override
+        public void onRestored(List<RegionStore.StoredRegion> regions) {
+            this.regions = regions;
+            restored.countDown();
+        }
+
+        List<RegionStore.StoredRegion> await() throws InterruptedException {
+            assertTrue("the regions were not restored", restored.await(5, TimeUnit.SECONDS));
+            return regions;
+        }
+    }
+}
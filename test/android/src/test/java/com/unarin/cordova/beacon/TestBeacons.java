@@ -0,0 +1,62 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package com.unarin.cordova.beacon;
+
+import org.altbeacon.beacon.Beacon;
+import org.altbeacon.beacon.distance.DistanceCalculator;
+import org.altbeacon.beacon.logging.LogManager;
+import org.altbeacon.beacon.logging.Loggers;
+
+/*
+ * Beacons for the tests. The distance follows the log-distance model of the benchmarks with a path loss
+ * exponent of 2, with the default TX_POWER an RSSI of -59 is a metre, every 6 dB less doubles it.
+ */
+final class TestBeacons {
+
+    static final String UUID = "E2C56DB5-DFFB-48D2-B060-D0F5A71096E0";
+    static final int TX_POWER = -59;
+
+    static {
+        // The library computes the distance with a model picked for the device, it needs an Android context.
+        Beacon.setDistanceCalculator(new DistanceCalculator() {
+            @Override
+            public double calculateDistance(int txPower, double rssi) {
+                return Math.pow(10.0, (txPower - rssi) / 20.0);
+            }
+        });
+        LogManager.setLogger(Loggers.empty());
+    }
+
+    private TestBeacons() {
+    }
+
+    static Beacon beacon(String uuid, int major, int minor, int rssi) {
+        return new Beacon.Builder()
+                .setId1(uuid)
+                .setId2(String.valueOf(major))
+                .setId3(String.valueOf(minor))
+                .setRssi(rssi)
+                .setTxPower(TX_POWER)
+                .build();
+    }
+
+    static Beacon beacon(int minor, int rssi) {
+        return beacon(UUID, 1, minor, rssi);
+    }
+}
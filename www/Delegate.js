@@ -68,6 +68,16 @@ Delegate.didRangeBeaconsInRegion = function(pluginResult) {
 	pluginResult.region = Regions.fromJson(pluginResult.region);
 };
 
+Delegate.didRangeBeaconsInRegions = function(pluginResult) {
+	_.each(pluginResult.regions, function(rangingResult) {
+		rangingResult.region = Regions.fromJson(rangingResult.region);
+	});
+};
+
+Delegate.didChangeProximity = function(pluginResult) {
+	pluginResult.region = Regions.fromJson(pluginResult.region);
+};
+
 Delegate.peripheralManagerDidStartAdvertising = function(pluginResult) {
 	pluginResult.region = Regions.fromJson(pluginResult.region);
 };
@@ -80,6 +90,10 @@ Delegate.didChangeAuthorizationStatus = function(status) {
 	
 };
 
+Delegate.didUpdateMetrics = function(pluginResult) {
+
+};
+
 Delegate.safeTraceLogging = function(message) {
 	if (!_.isString(message)) {
 		return;
@@ -120,6 +134,25 @@ Delegate.prototype.didRangeBeaconsInRegion = function() {
 	Delegate.safeTraceLogging('DEFAULT didRangeBeaconsInRegion()');
 };
 
+/**
+ * Only called on Android when the BatchRangingEvents preference is enabled,
+ * instead of {Delegate.didRangeBeaconsInRegion}. The 'regions' field of
+ * [pluginResult] maps the region identifiers to the ranging results of
+ * a single scan cycle.
+ */
+Delegate.prototype.didRangeBeaconsInRegions = function() {
+	Delegate.safeTraceLogging('DEFAULT didRangeBeaconsInRegions()');
+};
+
+/**
+ * Only called on Android for regions ranged with the 'proximityEvents' option.
+ * The 'changes' field of [pluginResult] lists the beacons whose proximity
+ * class changed in the last ranging cycle, each with its 'proximity' and
+ * 'previousProximity'.
+ */
+Delegate.prototype.didChangeProximity = function() {
+	Delegate.safeTraceLogging('DEFAULT didChangeProximity()');
+};
 
 Delegate.prototype.peripheralManagerDidStartAdvertising = function() {
 	Delegate.safeTraceLogging('DEFAULT peripheralManagerDidStartAdvertising()');
@@ -133,5 +166,14 @@ Delegate.prototype.didChangeAuthorizationStatus = function() {
 	Delegate.safeTraceLogging('DEFAULT didChangeAuthorizationStatus()');
 };
 
+/**
+ * Only called on Android if the MetricsEventInterval preference is set. The
+ * 'metrics' field of [pluginResult] holds the same object as the one
+ * {LocationManager.getMetrics} resolves with.
+ */
+Delegate.prototype.didUpdateMetrics = function() {
+	Delegate.safeTraceLogging('DEFAULT didUpdateMetrics()');
+};
+
 
 module.exports = Delegate;
@@ -28,6 +28,20 @@ var Region = require('com.unarin.cordova.beacon.Region');
 var CircularRegion = require('com.unarin.cordova.beacon.CircularRegion');
 var BeaconRegion = require('com.unarin.cordova.beacon.BeaconRegion');
 
+/**
+ * Names of the proximity classes, indexed by the ordinals used in binary
+ * ranging events.
+ */
+var PROXIMITY_NAMES = ['ProximityUnknown', 'ProximityImmediate', 'ProximityNear', 'ProximityFar'];
+
+/**
+ * Two character hex representation of every byte value, used to format the
+ * UUIDs of binary ranging events.
+ */
+var HEX_OF_BYTE = _.map(_.range(256), function(value) {
+	return (value + 0x100).toString(16).substr(1);
+});
+
 /**
  * Creates an instance of the plugin.
  * 
@@ -113,6 +127,10 @@ LocationManager.prototype._registerDelegateCallbackId = function () {
  */
 LocationManager.prototype._onDelegateCallback = function (deferred, pluginResult) {
 
+	if (pluginResult instanceof ArrayBuffer) { // Ranging event in the binary wire format (Android only).
+		pluginResult = this._decodeBinaryRangingEvent(pluginResult);
+	}
+
 	this.appendToDeviceLog('_onDelegateCallback() ' + JSON.stringify(pluginResult));
 
 	if (pluginResult && _.isString(pluginResult['eventType'])) { // The native layer calling the DOM with a delegate event.
@@ -124,6 +142,113 @@ LocationManager.prototype._onDelegateCallback = function (deferred, pluginResult
 	}
 };
 
+/**
+ * Decodes a ranging event sent by the native layer in the binary wire format
+ * (see BinaryRangingEncoder.java for the layout) into the same structure as
+ * the JSON payload of {Delegate.didRangeBeaconsInRegion} or
+ * {Delegate.didRangeBeaconsInRegions}.
+ *
+ * @param {ArrayBuffer} buffer The binary payload of the ranging event.
+ *
+ * @returns {Object} The decoded pluginResult, with the 'eventType' set.
+ */
+LocationManager.prototype._decodeBinaryRangingEvent = function (buffer) {
+	var view = new DataView(buffer);
+	var offset = 0;
+
+	var version = view.getUint8(offset);
+	if (version !== 1) {
+		throw new Error('Unsupported binary ranging event version: ' + version);
+	}
+	var kind = view.getUint8(offset + 1);
+	var regionCount = view.getUint16(offset + 2);
+	offset += 4;
+
+	var readUuid = function(at) {
+		var hex = '';
+		for (var i = 0; i < 16; i++) {
+			hex += HEX_OF_BYTE[view.getUint8(at + i)];
+			if (i === 3 || i === 5 || i === 7 || i === 9) {
+				hex += '-';
+			}
+		}
+		return hex;
+	};
+
+	var decodeUtf8 = function(bytes) {
+		if (typeof TextDecoder !== 'undefined') {
+			return new TextDecoder('utf-8').decode(bytes);
+		}
+		return decodeURIComponent(escape(String.fromCharCode.apply(null, bytes)));
+	};
+
+	var results = [];
+	for (var r = 0; r < regionCount; r++) {
+		var flags = view.getUint8(offset);
+		var regionLength = view.getUint16(offset + 1);
+		offset += 3;
+		var result = {
+			region: JSON.parse(decodeUtf8(new Uint8Array(buffer, offset, regionLength))),
+			beacons: []
+		};
+		offset += regionLength;
+
+		var count = view.getUint16(offset);
+		var uuidAt = offset + 2;
+		var majorAt = uuidAt + count * 16;
+		var minorAt = majorAt + count * 2;
+		var rssiAt = minorAt + count * 2;
+		var txAt = rssiAt + count;
+		var accuracyAt = txAt + count;
+		var proximityAt = accuracyAt + count * 4;
+		for (var b = 0; b < count; b++) {
+			result.beacons.push({
+				uuid: readUuid(uuidAt + b * 16),
+				major: String(view.getUint16(majorAt + b * 2)),
+				minor: String(view.getUint16(minorAt + b * 2)),
+				proximity: PROXIMITY_NAMES[view.getUint8(proximityAt + b)],
+				rssi: view.getInt8(rssiAt + b),
+				tx: view.getInt8(txAt + b),
+				accuracy: Math.round(view.getFloat32(accuracyAt + b * 4) * 100.0) / 100.0
+			});
+		}
+		offset = proximityAt + count;
+
+		if (flags & 4) { // nearest
+			result.rankingChanged = (flags & 8) !== 0;
+		}
+		if (flags & 1) { // delta
+			result.keyframe = (flags & 2) !== 0;
+			result.removed = [];
+			var removedCount = view.getUint16(offset);
+			var removedUuidAt = offset + 2;
+			var removedMajorAt = removedUuidAt + removedCount * 16;
+			var removedMinorAt = removedMajorAt + removedCount * 2;
+			for (var d = 0; d < removedCount; d++) {
+				result.removed.push({
+					uuid: readUuid(removedUuidAt + d * 16),
+					major: String(view.getUint16(removedMajorAt + d * 2)),
+					minor: String(view.getUint16(removedMinorAt + d * 2))
+				});
+			}
+			offset = removedMinorAt + removedCount * 2;
+		}
+		results.push(result);
+	}
+
+	if (kind === 2) {
+		var regions = {};
+		_.each(results, function(result) {
+			regions[result.region.identifier] = result;
+		});
+		return {eventType: 'didRangeBeaconsInRegions', regions: regions};
+	}
+
+	var single = results[0];
+	single.eventType = 'didRangeBeaconsInRegion';
+	return single;
+};
+
 /**
  * Routes async messages arriving from the native layer to the appropriate
  * delegate methods.
@@ -205,6 +330,19 @@ LocationManager.prototype._promisedExec = function (method, commandArgs, preProc
 	return d.promise;
 };
 
+/**
+ * Queries the counters of the native event queue which buffers the delegate
+ * events until the DOM is ready to consume them. (ANDROID ONLY)
+ *
+ * @returns {Q.Promise} Returns a promise which is resolved with an {Object}
+ * holding the configured capacity and overflow policy, the current depth of
+ * the queue, the number of enqueued, dropped and replayed events and the
+ * number of monitoring transitions suppressed by debouncing.
+ */
+LocationManager.prototype.getEventQueueStats = function() {
+	return this._promisedExec('getEventQueueStats', [], []);
+};
+
 /**
  * Signals the native layer that the client side is ready to consume messages.
  * Readiness here means that it has a {Delegate} set by the consumer javascript
@@ -271,13 +409,22 @@ LocationManager.prototype.disableBluetooth = function() {
  *
  * @param {Region} region An instance of {Region} which will be monitored
  * by the operating system.
+ *
+ * @param {Object} options Optional monitoring options of the region. (ANDROID ONLY)
+ * Supported keys:
+ * - enterDebounceMilliseconds: {Number} An enter is only delivered once the
+ * region was inside for this long.
+ * - exitGraceMilliseconds: {Number} An exit is only delivered once the region
+ * was outside for this long.
+ * Transitions which flip back within the window are not delivered at all.
  * 
  * @return {Q.Promise} Returns a promise which is resolved as soon as the
  * native layer acknowledged the dispatch of the monitoring request.
  */
-LocationManager.prototype.startMonitoringForRegion = function(region) {
+LocationManager.prototype.startMonitoringForRegion = function(region, options) {
 	Regions.checkRegionType(region);
-	return this._promisedExec('startMonitoringForRegion', [region], []);
+	var commandArgs = _.isObject(options) ? [region, options] : [region];
+	return this._promisedExec('startMonitoringForRegion', commandArgs, []);
 };
 
 /**
@@ -328,14 +475,42 @@ LocationManager.prototype.requestStateForRegion = function(region) {
  * @param {Region} region An instance of {BeaconRegion} which will be monitored
  * by the operating system.
  *
+ * @param {Object} options Optional ranging options of the region. (ANDROID ONLY)
+ * Supported keys:
+ * - delta: {Boolean|Object} When set, a ranging event only contains the
+ * beacons which were added or moved since the previous event, the beacons
+ * which disappeared are listed in 'removed'. Every 'keyframeInterval'th event
+ * has 'keyframe' set to true and contains all beacons. The object form
+ * accepts 'rssiThreshold' (dBm, default 3), 'accuracyThreshold' (metres,
+ * default 0.5) and 'keyframeInterval' (ranging cycles, default 10).
+ * - filter: {Object} Drops beacons natively before they are sent to the DOM.
+ * Accepts 'minRssi' (dBm), 'maxAccuracy' (metres), 'proximities' (array of
+ * proximity names, e.g. ['ProximityImmediate', 'ProximityNear']) and
+ * 'maxBeacons' (keeps the nearest beacons). All keys are optional.
+ * - rssiFilter: {Object} Computes the accuracy and proximity of the beacons
+ * of this region from an RSSI filter with its own parameters instead of the
+ * global filter. Accepts 'type' ('kalman' (default), 'running-average' or
+ * 'none'), 'sampleExpirationMilliseconds' (default 20000) and for kalman
+ * 'processNoise' (default 0.5) and 'measurementNoise' (default 4.0).
+ * - proximityEvents: {Boolean} Sends {Delegate.didChangeProximity} events
+ * with the beacons whose proximity class changed, computed natively.
+ * - rangingEvents: {Boolean} Set to false to not send ranging events for the
+ * region at all, e.g. when only proximity events are needed. Default true.
+ * - nearest: {Number|Object} Only reports the K nearest beacons, nearest
+ * first, ranked by a smoothed distance. Events carry 'rankingChanged'. The
+ * object form accepts 'count' (K, default 3), 'smoothing' (0..1, default 0.3),
+ * 'memoryCycles' (default 3) and 'changesOnly' (only send events when the
+ * ranking changed, default false).
+ *
  * @return {Q.Promise} Returns a promise which is resolved as soon as the
  * native layer acknowledged the dispatch of the monitoring request.
  */
-LocationManager.prototype.startRangingBeaconsInRegion = function(region) {
+LocationManager.prototype.startRangingBeaconsInRegion = function(region, options) {
 	if (!Regions.isBeaconRegion(region))
 		throw new TypeError('The region parameter has to be an instance of BeaconRegion');
 
-	return this._promisedExec('startRangingBeaconsInRegion', [region], []);
+	var commandArgs = _.isObject(options) ? [region, options] : [region];
+	return this._promisedExec('startRangingBeaconsInRegion', commandArgs, []);
 };
 
 /**
@@ -359,6 +534,92 @@ LocationManager.prototype.stopRangingBeaconsInRegion = function(region) {
 	return this._promisedExec('stopRangingBeaconsInRegion', [region], []);
 };
 
+/**
+ * Validates that [regions] is an array of {Region} instances, or of
+ * {BeaconRegion} instances if [beaconRegionsOnly] is true.
+ *
+ * @returns {undefined} Throws a {TypeError} otherwise.
+ */
+LocationManager.prototype._checkRegionArray = function(regions, beaconRegionsOnly) {
+	if (!_.isArray(regions))
+		throw new TypeError('The regions parameter has to be an array');
+
+	_.each(regions, function(region) {
+		if (beaconRegionsOnly && !Regions.isBeaconRegion(region))
+			throw new TypeError('The regions parameter has to contain instances of BeaconRegion');
+		Regions.checkRegionType(region);
+	});
+};
+
+/**
+ * Starts monitoring all the specified regions with a single call to the
+ * native layer. (ANDROID ONLY)
+ *
+ * A region which cannot be monitored doesn't prevent the others from being
+ * monitored, its failure is reported in the result instead.
+ *
+ * @param {Array} regions An array of {Region} instances.
+ *
+ * @param {Object} options Optional monitoring options applied to every region,
+ * see {LocationManager.startMonitoringForRegion}.
+ *
+ * @return {Q.Promise} Returns a promise which is resolved with an {Object}
+ * holding the number of regions 'succeeded' and the array of regions 'failed',
+ * each with its 'index', 'identifier' and 'error'.
+ */
+LocationManager.prototype.startMonitoringForRegions = function(regions, options) {
+	this._checkRegionArray(regions, false);
+	var commandArgs = _.isObject(options) ? [regions, options] : [regions];
+	return this._promisedExec('startMonitoringForRegions', commandArgs, []);
+};
+
+/**
+ * Stops monitoring all the specified regions with a single call to the
+ * native layer. (ANDROID ONLY)
+ *
+ * @param {Array} regions An array of {Region} instances.
+ *
+ * @return {Q.Promise} Returns a promise which is resolved with an {Object}
+ * holding the number of regions 'succeeded' and the array of regions 'failed'.
+ */
+LocationManager.prototype.stopMonitoringForRegions = function(regions) {
+	this._checkRegionArray(regions, false);
+	return this._promisedExec('stopMonitoringForRegions', [regions], []);
+};
+
+/**
+ * Starts ranging all the specified beacon regions with a single call to the
+ * native layer. (ANDROID ONLY)
+ *
+ * @param {Array} regions An array of {BeaconRegion} instances.
+ *
+ * @param {Object} options Optional ranging options applied to every region,
+ * see {LocationManager.startRangingBeaconsInRegion}.
+ *
+ * @return {Q.Promise} Returns a promise which is resolved with an {Object}
+ * holding the number of regions 'succeeded' and the array of regions 'failed'.
+ */
+LocationManager.prototype.startRangingBeaconsInRegions = function(regions, options) {
+	this._checkRegionArray(regions, true);
+
+	var commandArgs = _.isObject(options) ? [regions, options] : [regions];
+	return this._promisedExec('startRangingBeaconsInRegions', commandArgs, []);
+};
+
+/**
+ * Stops ranging all the specified beacon regions with a single call to the
+ * native layer. (ANDROID ONLY)
+ *
+ * @param {Array} regions An array of {BeaconRegion} instances.
+ *
+ * @return {Q.Promise} Returns a promise which is resolved with an {Object}
+ * holding the number of regions 'succeeded' and the array of regions 'failed'.
+ */
+LocationManager.prototype.stopRangingBeaconsInRegions = function(regions) {
+	this._checkRegionArray(regions, true);
+	return this._promisedExec('stopRangingBeaconsInRegions', [regions], []);
+};
+
 /**
  * Queries the native layer to determine the current authorization in effect.
  * 
@@ -533,6 +794,71 @@ LocationManager.prototype.enableDebugLogs = function() {
 	return this._promisedExec('enableDebugLogs', [], []);
 };
 
+/**
+ * Changes the scan timing of the native layer without restarting it. (ANDROID ONLY)
+ *
+ * @param {String|Object} profile Either the name of a preset ('low-latency',
+ * 'balanced' or 'low-power') or an object with an optional 'preset' and any of
+ * 'foregroundScanPeriod', 'foregroundBetweenScanPeriod', 'backgroundScanPeriod'
+ * and 'backgroundBetweenScanPeriod' in milliseconds. Periods which are not
+ * given are taken from the preset, or from the current profile.
+ *
+ * @returns {Q.Promise} Returns a promise which is resolved with the applied
+ * profile, its 'name' and the four periods.
+ */
+LocationManager.prototype.setScanProfile = function(profile) {
+	if (!_.isString(profile) && !_.isObject(profile))
+		throw new TypeError('The profile parameter has to be a preset name or an object');
+
+	return this._promisedExec('setScanProfile', [profile], []);
+};
+
+/**
+ * Returns the number of commands waiting for the native command executor and
+ * the latency statistics of every action called so far. (ANDROID ONLY)
+ *
+ * @returns {Q.Promise} Returns a promise which is resolved with an {Object}
+ * holding the queue 'depth' and an 'actions' map with the 'count',
+ * 'avgWaitMs', 'maxWaitMs', 'avgRunMs' and 'maxRunMs' of every action.
+ */
+LocationManager.prototype.getCommandStats = function() {
+	return this._promisedExec('getCommandStats', [], []);
+};
+
+/**
+ * Returns the performance counters of the native event pipeline. (ANDROID ONLY)
+ *
+ * @returns {Q.Promise} Returns a promise which is resolved with an {Object}
+ * holding 'scanning' (the scan 'cycles', 'cyclesPerMinute',
+ * 'avgBeaconsPerCycle' and 'maxBeaconsPerCycle', counting the distinct
+ * beacons of all ranged regions in a cycle), 'events' (keyed by the
+ * 'eventType' of the delegate events, e.g. 'didRangeBeaconsInRegion',
+ * the number of events 'enqueued', 'dispatched' and 'dropped' along with the
+ * average and maximum serialization and sendPluginResult times, and a
+ * 'latency' object with the 'count', 'avgMs', 'p50Ms', 'p99Ms' and 'maxMs' of
+ * the 'queueWait', 'serialization', 'send' and 'endToEnd' stages),
+ * 'eventQueue' (the counters of {LocationManager.getEventQueueStats}) and
+ * 'commands' (the result of {LocationManager.getCommandStats}).
+ */
+LocationManager.prototype.getMetrics = function() {
+	return this._promisedExec('getMetrics', [], []);
+};
+
+/**
+ * Returns the trace records the native layer keeps in memory about the
+ * events and commands passing through the plugin, oldest first. (ANDROID ONLY)
+ *
+ * @param {Boolean} clear Optional, if true the records are removed from the
+ * native trace buffer after they were dumped.
+ *
+ * @returns {Q.Promise} Returns a promise which is resolved with an {Object}
+ * holding the 'records' {Array} and the 'capacity', 'recorded' and
+ * 'overwritten' counters of the trace buffer.
+ */
+LocationManager.prototype.dumpTraceBuffer = function(clear) {
+	return this._promisedExec('dumpTraceBuffer', [clear === true], []);
+};
+
 /**
  * Appends the provided [message] to the device logs.
  * Note: If debug logging is turned off, this won't do anything.